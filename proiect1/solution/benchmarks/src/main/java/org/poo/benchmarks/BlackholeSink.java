@@ -0,0 +1,25 @@
+package org.poo.benchmarks;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.infra.Blackhole;
+import org.poo.output.OutputSink;
+
+/**
+ * Output sink that hands every entry to a blackhole.
+ */
+final class BlackholeSink implements OutputSink {
+    private final Blackhole blackhole;
+
+    BlackholeSink(final Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void add(final ObjectNode entry) {
+        blackhole.consume(entry);
+    }
+
+    @Override
+    public void close() {
+    }
+}
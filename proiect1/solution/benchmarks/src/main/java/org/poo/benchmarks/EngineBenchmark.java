@@ -0,0 +1,295 @@
+package org.poo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.poo.accounts.Account;
+import org.poo.cards.Card;
+import org.poo.commands.Command;
+import org.poo.commands.CommandRegistry;
+import org.poo.commands.CommandType;
+import org.poo.commands.FundingBatch;
+import org.poo.main.Action;
+import org.poo.money.Money;
+import org.poo.transactions.SplitPayment;
+import org.poo.users.Database;
+import org.poo.users.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hot paths of the engine over a populated bank: the given number of
+ * users, each with the given number of accounts, each holding the given
+ * number of card payments. Accounts cycle through the currencies of a
+ * chain of exchange rates, so conversions go through derived rates too.
+ * Every benchmark walks the users, accounts and currency pairs in turn,
+ * so it does not keep hitting the same cached entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = SerializationBenchmark.ITERATIONS)
+@Measurement(iterations = SerializationBenchmark.ITERATIONS)
+@Fork(1)
+public class EngineBenchmark {
+    private static final String[] CURRENCIES = {"EUR", "USD", "RON", "GBP", "CAD", "JPY"};
+    private static final double[] RATES = {1.1, 4.6, 0.18, 1.7, 105};
+    private static final double BALANCE = 1_000_000_000;
+    private static final long PAYMENT = Money.of(1);
+    private static final int COMMERCIANTS = 10;
+    private static final int SPLIT_ACCOUNTS = 3;
+    private static final int DEPOSIT_RUN = 64;
+    private static final int DEPOSITS_PER_ACCOUNT = 2;
+    private static final CommandRegistry DEPOSITS = new CommandRegistry()
+            .register(CommandType.ADD_FUNDS, Action::addFunds);
+
+    @Param({"10", "1000"})
+    private int userCount;
+
+    @Param({"1", "4"})
+    private int accountsPerUser;
+
+    @Param({"10", "100"})
+    private int transactionsPerAccount;
+
+    private Database database;
+    private User[] users;
+    private Account[] accounts;
+    private String[] ibans;
+    private long[] ibanIds;
+    private Card[] cards;
+    private Command.Report[] reports;
+    private Command.PrintTransactions[] printTransactions;
+    private Command.AddFunds[] deposits;
+    private FundingBatch fundingBatch;
+    private Path snapshot;
+    private int next = 0;
+
+    /**
+     * Builds the bank, fills every account with card payments and writes
+     * the result to a snapshot.
+     * @param blackhole receives the output of the funding batch
+     * @throws IOException in case of exceptions to writing
+     */
+    @Setup
+    public void setup(final Blackhole blackhole) throws IOException {
+        database = new Database();
+        for (int i = 0; i + 1 < CURRENCIES.length; i++) {
+            database.addExchangeRate(CURRENCIES[i], CURRENCIES[i + 1], RATES[i], 0);
+        }
+
+        int timestamp = 1;
+        database.setTimestamp(timestamp);
+        users = new User[userCount];
+        List<Account> allAccounts = new ArrayList<>();
+        for (int u = 0; u < userCount; u++) {
+            users[u] = new User(database, "Bench", "Mark", "user" + u + "@bench.ro");
+            database.addUser(users[u]);
+            for (int a = 0; a < accountsPerUser; a++) {
+                users[u].createAccount(CURRENCIES[allAccounts.size() % CURRENCIES.length]);
+                Account account = users[u].getAccounts().get(a);
+                account.deposit(Money.of(BALANCE));
+                account.createCard();
+                allAccounts.add(account);
+            }
+        }
+
+        accounts = allAccounts.toArray(new Account[0]);
+        ibans = new String[accounts.length];
+        ibanIds = new long[accounts.length];
+        cards = new Card[accounts.length];
+        for (int i = 0; i < accounts.length; i++) {
+            ibans[i] = accounts[i].getIban();
+            ibanIds[i] = accounts[i].getIbanId();
+            cards[i] = accounts[i].getCards().get(0);
+        }
+
+        for (int t = 0; t < transactionsPerAccount; t++) {
+            database.setTimestamp(++timestamp);
+            for (Card card : cards) {
+                card.makePayment(PAYMENT, "EUR", "shop" + t % COMMERCIANTS);
+            }
+        }
+
+        int end = timestamp;
+        reports = new Command.Report[accounts.length];
+        for (int i = 0; i < accounts.length; i++) {
+            reports[i] = new Command.Report(ibans[i], end / 2, end, end);
+        }
+        printTransactions = new Command.PrintTransactions[users.length];
+        for (int u = 0; u < users.length; u++) {
+            printTransactions[u] = new Command.PrintTransactions(users[u].getEmail(), end);
+        }
+
+        deposits = new Command.AddFunds[accounts.length * DEPOSITS_PER_ACCOUNT];
+        for (int i = 0; i < deposits.length; i++) {
+            deposits[i] = new Command.AddFunds(ibans[i / DEPOSITS_PER_ACCOUNT], 1, end);
+        }
+        fundingBatch = new FundingBatch(DEPOSITS, database, new BlackholeSink(blackhole));
+
+        snapshot = Files.createTempFile("engine", ".snapshot");
+        database.writeSnapshot(snapshot);
+    }
+
+    /**
+     * @throws IOException in case of exceptions to deleting
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    private int nextIndex(final int bound) {
+        next = next + 1 < bound ? next + 1 : 0;
+        return next;
+    }
+
+    /**
+     * @return the account found for the next IBAN
+     */
+    @Benchmark
+    public Account getAccountByIBAN() {
+        return database.getAccountByIBAN(ibans[nextIndex(ibans.length)]);
+    }
+
+    /**
+     * @return the account found for the next packed IBAN
+     */
+    @Benchmark
+    public Account getAccountByIbanId() {
+        return database.getAccountByIBAN(ibanIds[nextIndex(ibanIds.length)]);
+    }
+
+    /**
+     * @return the rate between the next pair of currencies
+     */
+    @Benchmark
+    public double getExchangeRate() {
+        int i = nextIndex(CURRENCIES.length * CURRENCIES.length);
+        return database.getExchangeRate(
+                CURRENCIES[i / CURRENCIES.length],
+                CURRENCIES[i % CURRENCIES.length]);
+    }
+
+    /**
+     * One card payment in euro from the next account, converted to the
+     * account's currency.
+     */
+    @Benchmark
+    public void makePayment() {
+        cards[nextIndex(cards.length)].makePayment(PAYMENT, "EUR", "shop");
+    }
+
+    /**
+     * One transfer from the next account to the account after it.
+     */
+    @Benchmark
+    public void sendMoney() {
+        int i = nextIndex(accounts.length);
+        accounts[i].sendMoney(PAYMENT, accounts[(i + 1) % accounts.length], "bench");
+    }
+
+    /**
+     * One split payment in euro between the next few accounts.
+     */
+    @Benchmark
+    public void splitPayment() {
+        int i = nextIndex(accounts.length);
+        List<Account> involved = new ArrayList<>(SPLIT_ACCOUNTS);
+        for (int k = 0; k < SPLIT_ACCOUNTS; k++) {
+            involved.add(accounts[(i + k) % accounts.length]);
+        }
+        new SplitPayment(involved, database.getTimestamp(), PAYMENT, "EUR").makePayment();
+    }
+
+    /**
+     * @param blackhole
+     */
+    @Benchmark
+    public void printTransactions(final Blackhole blackhole) {
+        int u = nextIndex(users.length);
+        Action.printTransactions(printTransactions[u], database, users[u],
+                new BlackholeSink(blackhole));
+    }
+
+    /**
+     * Report over the second half of the next account's history. Accounts
+     * do not change in between, so after the first round every report is
+     * served from the account's report cache.
+     * @param blackhole
+     */
+    @Benchmark
+    public void report(final Blackhole blackhole) {
+        Action.report(reports[nextIndex(reports.length)], database, null,
+                new BlackholeSink(blackhole));
+    }
+
+    /**
+     * Report over the second half of the next account's history, after a
+     * deposit that makes the account rebuild it.
+     * @param blackhole
+     */
+    @Benchmark
+    public void reportAfterDeposit(final Blackhole blackhole) {
+        int i = nextIndex(reports.length);
+        accounts[i].deposit(PAYMENT);
+        Action.report(reports[i], database, null, new BlackholeSink(blackhole));
+    }
+
+    /**
+     * A run of deposits, two to each of the next accounts, one by one.
+     * @param blackhole
+     */
+    @Benchmark
+    public void addFunds(final Blackhole blackhole) {
+        BlackholeSink output = new BlackholeSink(blackhole);
+        int start = nextIndex(deposits.length);
+        for (int k = 0; k < DEPOSIT_RUN; k++) {
+            DEPOSITS.dispatch(database, deposits[(start + k) % deposits.length], output);
+        }
+    }
+
+    /**
+     * The run of {@link #addFunds} as one {@link FundingBatch}.
+     */
+    @Benchmark
+    public void addFundsBatch() {
+        int start = nextIndex(deposits.length);
+        for (int k = 0; k < DEPOSIT_RUN; k++) {
+            fundingBatch.submit(deposits[(start + k) % deposits.length]);
+        }
+        fundingBatch.close();
+    }
+
+    /**
+     * @throws IOException in case of exceptions to writing
+     */
+    @Benchmark
+    public void writeSnapshot() throws IOException {
+        database.writeSnapshot(snapshot);
+    }
+
+    /**
+     * @return the bank loaded back from its snapshot
+     * @throws IOException in case of exceptions to reading
+     */
+    @Benchmark
+    public Database readSnapshot() throws IOException {
+        return Database.readSnapshot(snapshot);
+    }
+}
@@ -0,0 +1,109 @@
+package org.poo.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.poo.accounts.Account;
+import org.poo.commands.Command;
+import org.poo.main.Action;
+import org.poo.money.Money;
+import org.poo.transactions.Transaction;
+import org.poo.users.Database;
+import org.poo.users.User;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning transactions into JSON, with one user whose single
+ * account holds the given number of card payments.
+ * Compare gc.alloc.rate.norm of transactionsToJson and mapperPerTransaction
+ * to see what building an ObjectMapper for every node used to cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = SerializationBenchmark.ITERATIONS)
+@Measurement(iterations = SerializationBenchmark.ITERATIONS)
+@Fork(1)
+public class SerializationBenchmark {
+    static final int ITERATIONS = 3;
+    private static final double BALANCE = 1_000_000_000;
+    private static final int COMMERCIANTS = 10;
+    private static final long PAYMENT = Money.of(1);
+
+    @Param({"100", "1000", "10000"})
+    private int transactionCount;
+
+    private User user;
+    private List<Transaction> transactions;
+    private Command.PrintTransactions printTransactions;
+
+    /**
+     * Builds the account and its payments.
+     */
+    @Setup
+    public void setup() {
+        Database database = new Database();
+        database.setTimestamp(1);
+
+        user = new User(database, "Bench", "Mark", "bench@mark.ro");
+        database.addUser(user);
+        user.createAccount("EUR");
+        Account account = user.getAccounts().get(0);
+        account.deposit(Money.of(BALANCE));
+        account.createCard();
+
+        for (int i = 0; i < transactionCount; i++) {
+            database.setTimestamp(i + 2);
+            account.getCards().get(0).makePayment(PAYMENT, "EUR", "shop" + i % COMMERCIANTS);
+        }
+        transactions = account.getTransactions();
+
+        printTransactions = new Command.PrintTransactions(
+                user.getEmail(), transactionCount + 2);
+    }
+
+    /**
+     * @param blackhole
+     */
+    @Benchmark
+    public void transactionsToJson(final Blackhole blackhole) {
+        for (Transaction transaction : transactions) {
+            blackhole.consume(transaction.toJson());
+        }
+    }
+
+    /**
+     * The previous serialization cost: one mapper built for every node.
+     * @param blackhole
+     */
+    @Benchmark
+    public void mapperPerTransaction(final Blackhole blackhole) {
+        for (Transaction transaction : transactions) {
+            ObjectNode node = new ObjectMapper().createObjectNode();
+            node.setAll(transaction.toJson());
+            blackhole.consume(node);
+        }
+    }
+
+    /**
+     * @param blackhole
+     */
+    @Benchmark
+    public void printTransactions(final Blackhole blackhole) {
+        Action.printTransactions(printTransactions, user.getDatabase(), user,
+                new BlackholeSink(blackhole));
+    }
+}
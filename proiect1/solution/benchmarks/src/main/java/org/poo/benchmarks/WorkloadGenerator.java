@@ -0,0 +1,698 @@
+package org.poo.benchmarks;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.poo.utils.IdGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes a synthetic input file in the format read by the bank, streamed
+ * through a JsonGenerator so its size is bounded only by the disk.
+ * <p>
+ * The file opens with {@code --accounts} addAccount commands spread over
+ * the users, a deposit into each new account and {@code --cards}
+ * createCard commands, followed by {@code --commands} commands drawn from
+ * the command mix. IBANs and card numbers are predicted with the same
+ * seeded generator the bank uses, so later commands reuse the identifiers
+ * the bank will actually assign; one-time cards are never paid with,
+ * since a successful payment would replace them and shift every later
+ * card number. Deleted accounts and cards stay in the pools, so commands
+ * keep referencing them and exercise the error paths.
+ * <p>
+ * Options, all written as {@code --name=value}: output, phase (1 or 2),
+ * users, accounts, cards, currencies, commerciants, commands, seed and
+ * mix, a comma separated list of {@code command:weight} entries that
+ * override the default weights of the phase.
+ */
+public final class WorkloadGenerator {
+    private static final String[] CURRENCIES = {
+        "EUR", "USD", "RON", "GBP", "CAD", "JPY", "CHF", "AUD", "SEK", "NOK",
+    };
+    private static final String[] FIRST_NAMES = {
+        "Ana", "Mihai", "Elena", "Andrei", "Ioana", "Radu", "Maria", "Vlad",
+    };
+    private static final String[] LAST_NAMES = {
+        "Popescu", "Ionescu", "Dumitru", "Stan", "Gheorghe", "Matei", "Constantin",
+    };
+    private static final String[] DOMAINS = {"gmail.com", "yahoo.ro", "outlook.fr"};
+    private static final String[] OCCUPATIONS = {"student", "engineer", "doctor", "artist"};
+    private static final String[] COMMERCIANT_TYPES = {"Food", "Clothes", "Tech"};
+    private static final String[] CASHBACK_STRATEGIES = {"nrOfTransactions", "spendingThreshold"};
+    private static final String[] PLANS = {"silver", "gold"};
+    private static final String[] ROLES = {"employee", "manager"};
+    private static final String[] DESCRIPTIONS = {"Rent", "Groceries", "Gift", "Tickets"};
+
+    private static final int ALPHABET = 26;
+    private static final int CODE_LENGTH = 3;
+    private static final int DEFAULT_USERS = 100;
+    private static final int DEFAULT_COMMERCIANTS = 20;
+    private static final int DIGIT_BOUND = 10;
+    private static final int MAX_RATE = 5;
+    private static final int MAX_DEPOSIT = 5_000;
+    private static final int MAX_PAYMENT = 200;
+    private static final int MAX_LIMIT = 1_000;
+    private static final double MAX_INTEREST = 0.1;
+    private static final int MAX_SPLIT_ACCOUNTS = 4;
+    private static final int ALIAS_RECEIVER_PERCENT = 30;
+    private static final int SAVINGS_PERCENT = 20;
+    private static final int BUSINESS_PERCENT = 10;
+    private static final int FIRST_BIRTH_YEAR = 1950;
+    private static final int BIRTH_YEARS = 55;
+    private static final int MONTHS = 12;
+    private static final int DAYS = 28;
+    private static final int IBAN_DIGITS = 16;
+    private static final int CHECK_DIGITS = 100;
+
+    /** Commands the generator can emit, with their default weights per phase. */
+    private enum Kind {
+        ADD_ACCOUNT("addAccount", 1, 3, 3),
+        ADD_FUNDS("addFunds", 1, 20, 20),
+        CREATE_CARD("createCard", 1, 3, 3),
+        CREATE_ONE_TIME_CARD("createOneTimeCard", 1, 1, 1),
+        PAY_ONLINE("payOnline", 1, 25, 20),
+        SEND_MONEY("sendMoney", 1, 10, 8),
+        SET_ALIAS("setAlias", 1, 3, 1),
+        PRINT_USERS("printUsers", 1, 0, 0),
+        PRINT_TRANSACTIONS("printTransactions", 1, 2, 2),
+        CHECK_CARD_STATUS("checkCardStatus", 1, 2, 1),
+        DELETE_CARD("deleteCard", 1, 1, 1),
+        DELETE_ACCOUNT("deleteAccount", 1, 1, 1),
+        SET_MINIMUM_BALANCE("setMinimumBalance", 1, 1, 1),
+        REPORT("report", 1, 3, 1),
+        SPENDINGS_REPORT("spendingsReport", 1, 3, 2),
+        SPLIT_PAYMENT("splitPayment", 1, 3, 3),
+        ADD_INTEREST("addInterest", 1, 1, 1),
+        CHANGE_INTEREST_RATE("changeInterestRate", 1, 1, 1),
+        UPGRADE_PLAN("upgradePlan", 2, 0, 3),
+        CASH_WITHDRAWAL("cashWithdrawal", 2, 0, 3),
+        WITHDRAW_SAVINGS("withdrawSavings", 2, 0, 2),
+        ADD_NEW_BUSINESS_ASSOCIATE("addNewBusinessAssociate", 2, 0, 2),
+        CHANGE_SPENDING_LIMIT("changeSpendingLimit", 2, 0, 1),
+        CHANGE_DEPOSIT_LIMIT("changeDepositLimit", 2, 0, 1),
+        BUSINESS_REPORT("businessReport", 2, 0, 1),
+        ACCEPT_SPLIT_PAYMENT("acceptSplitPayment", 2, 0, 5),
+        REJECT_SPLIT_PAYMENT("rejectSplitPayment", 2, 0, 1);
+
+        private final String command;
+        private final int phase;
+        private final int[] weights;
+
+        Kind(final String command, final int phase, final int phaseOne, final int phaseTwo) {
+            this.command = command;
+            this.phase = phase;
+            this.weights = new int[] {phaseOne, phaseTwo};
+        }
+    }
+
+    private record AccountRef(String iban, int owner, String currency, String type) {
+    }
+
+    private record CardRef(String number, AccountRef account) {
+    }
+
+    private record PendingSplit(String email, String type) {
+    }
+
+    private final Map<String, String> options;
+    private final int phase;
+    private final Random random;
+    private final IdGenerator ids = new IdGenerator();
+    private final String[] currencies;
+    private final String[] emails;
+    private final String[] commerciants;
+    private final Kind[] kinds;
+    private final int[] cumulativeWeights;
+
+    private final List<AccountRef> accounts = new ArrayList<>();
+    private final List<AccountRef> liveAccounts = new ArrayList<>();
+    private final List<AccountRef> savingsAccounts = new ArrayList<>();
+    private final List<AccountRef> businessAccounts = new ArrayList<>();
+    private final List<CardRef> cards = new ArrayList<>();
+    private final Map<Integer, List<String>> aliases = new HashMap<>();
+    private final ArrayDeque<PendingSplit> pendingSplits = new ArrayDeque<>();
+
+    private JsonGenerator json;
+    private int timestamp = 0;
+
+    private WorkloadGenerator(final Map<String, String> options) {
+        this.options = options;
+        this.phase = intOption("phase", 1);
+        this.random = new Random(intOption("seed", 1));
+
+        currencies = new String[Math.max(1, intOption("currencies", CURRENCIES.length))];
+        List<String> known = List.of(CURRENCIES);
+        for (int i = 0, code = 0; i < currencies.length; i++) {
+            if (i < CURRENCIES.length) {
+                currencies[i] = CURRENCIES[i];
+                continue;
+            }
+            do {
+                currencies[i] = syntheticCurrency(code++);
+            } while (known.contains(currencies[i]));
+        }
+        emails = new String[Math.max(1, intOption("users", DEFAULT_USERS))];
+        for (int i = 0; i < emails.length; i++) {
+            emails[i] = FIRST_NAMES[i % FIRST_NAMES.length] + "_"
+                    + LAST_NAMES[i / FIRST_NAMES.length % LAST_NAMES.length] + i + "@"
+                    + DOMAINS[i % DOMAINS.length];
+        }
+        commerciants = new String[Math.max(1, intOption("commerciants", DEFAULT_COMMERCIANTS))];
+        for (int i = 0; i < commerciants.length; i++) {
+            commerciants[i] = "Commerciant " + i;
+        }
+
+        EnumMap<Kind, Integer> weights = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            if (kind.phase <= phase) {
+                weights.put(kind, kind.weights[Math.min(phase, 2) - 1]);
+            }
+        }
+        String mix = options.get("mix");
+        if (mix != null && !mix.isBlank()) {
+            for (String entry : mix.split(",")) {
+                String[] parts = entry.split(":");
+                Kind kind = kindOf(parts[0].trim());
+                if (kind.phase > phase) {
+                    throw new IllegalArgumentException(kind.command + " is a phase "
+                            + kind.phase + " command");
+                }
+                weights.put(kind, Integer.parseInt(parts[1].trim()));
+            }
+        }
+
+        kinds = weights.keySet().toArray(new Kind[0]);
+        cumulativeWeights = new int[kinds.length];
+        int total = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            total += Math.max(0, weights.get(kinds[i]));
+            cumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("The command mix has no positive weight");
+        }
+    }
+
+    /**
+     * @param args options, as {@code --name=value}
+     * @throws IOException if the output cannot be written
+     */
+    public static void main(final String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        WorkloadGenerator generator = new WorkloadGenerator(options);
+        File output = new File(options.getOrDefault("output", "workload.json"));
+        try (JsonGenerator generatorOutput = new JsonFactory()
+                .createGenerator(output, JsonEncoding.UTF8)) {
+            generator.write(generatorOutput);
+        }
+    }
+
+    private void write(final JsonGenerator out) throws IOException {
+        json = out;
+        json.writeStartObject();
+        writeUsers();
+        writeExchangeRates();
+        if (phase > 1) {
+            writeCommerciants();
+        }
+
+        json.writeArrayFieldStart("commands");
+        int accountCount = intOption("accounts", emails.length);
+        for (int i = 0; i < accountCount; i++) {
+            addAccount(i % emails.length);
+            addFunds(accounts.get(accounts.size() - 1));
+        }
+        int cardCount = intOption("cards", accountCount);
+        for (int i = 0; i < cardCount; i++) {
+            createCard();
+        }
+        long commandCount = Long.parseLong(options.getOrDefault("commands", "10000"));
+        for (long i = 0; i < commandCount; i++) {
+            emit(nextKind());
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    private void writeUsers() throws IOException {
+        json.writeArrayFieldStart("users");
+        for (int i = 0; i < emails.length; i++) {
+            json.writeStartObject();
+            json.writeStringField("firstName", FIRST_NAMES[i % FIRST_NAMES.length]);
+            json.writeStringField("lastName",
+                    LAST_NAMES[i / FIRST_NAMES.length % LAST_NAMES.length]);
+            json.writeStringField("email", emails[i]);
+            if (phase > 1) {
+                json.writeStringField("birthDate", String.format(Locale.ROOT, "%d-%02d-%02d",
+                        FIRST_BIRTH_YEAR + random.nextInt(BIRTH_YEARS),
+                        1 + random.nextInt(MONTHS), 1 + random.nextInt(DAYS)));
+                json.writeStringField("occupation", pick(OCCUPATIONS));
+            }
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    /**
+     * A chain of rates through every currency, so each pair is reachable.
+     */
+    private void writeExchangeRates() throws IOException {
+        json.writeArrayFieldStart("exchangeRates");
+        for (int i = 0; i + 1 < currencies.length; i++) {
+            json.writeStartObject();
+            json.writeStringField("from", currencies[i]);
+            json.writeStringField("to", currencies[i + 1]);
+            json.writeNumberField("rate", amount(MAX_RATE));
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    private void writeCommerciants() throws IOException {
+        Random ibans = new Random(random.nextLong());
+        json.writeArrayFieldStart("commerciants");
+        for (int i = 0; i < commerciants.length; i++) {
+            StringBuilder iban = new StringBuilder("RO")
+                    .append(String.format(Locale.ROOT, "%02d", ibans.nextInt(CHECK_DIGITS)))
+                    .append("POOB");
+            for (int d = 0; d < IBAN_DIGITS; d++) {
+                iban.append(ibans.nextInt(DIGIT_BOUND));
+            }
+
+            json.writeStartObject();
+            json.writeStringField("commerciant", commerciants[i]);
+            json.writeNumberField("id", i);
+            json.writeStringField("account", iban.toString());
+            json.writeStringField("type", pick(COMMERCIANT_TYPES));
+            json.writeStringField("cashbackStrategy", pick(CASHBACK_STRATEGIES));
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    private Kind nextKind() {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < kinds.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return kinds[i];
+            }
+        }
+        return kinds[kinds.length - 1];
+    }
+
+    private void emit(final Kind kind) throws IOException {
+        if (kind == Kind.ADD_ACCOUNT) {
+            addAccount(random.nextInt(emails.length));
+            return;
+        }
+        if (accounts.isEmpty()) {
+            addAccount(random.nextInt(emails.length));
+            return;
+        }
+
+        switch (kind) {
+            case ADD_FUNDS -> addFunds(pick(accounts));
+            case CREATE_CARD -> createCard();
+            case CREATE_ONE_TIME_CARD -> createOneTimeCard();
+            case PAY_ONLINE -> payOnline();
+            case SEND_MONEY -> sendMoney();
+            case SET_ALIAS -> setAlias();
+            case PRINT_USERS -> {
+                start(kind);
+                end();
+            }
+            case PRINT_TRANSACTIONS -> {
+                start(kind);
+                json.writeStringField("email", pick(emails));
+                end();
+            }
+            case CHECK_CARD_STATUS -> {
+                if (cards.isEmpty()) {
+                    createCard();
+                    return;
+                }
+                start(kind);
+                json.writeStringField("cardNumber", pick(cards).number());
+                end();
+            }
+            case DELETE_CARD -> {
+                if (cards.isEmpty()) {
+                    createCard();
+                    return;
+                }
+                CardRef card = pick(cards);
+                start(kind);
+                json.writeStringField("email", emails[card.account().owner()]);
+                json.writeStringField("cardNumber", card.number());
+                end();
+            }
+            case DELETE_ACCOUNT -> {
+                if (liveAccounts.isEmpty()) {
+                    addAccount(random.nextInt(emails.length));
+                    return;
+                }
+                int index = random.nextInt(liveAccounts.size());
+                AccountRef account = liveAccounts.get(index);
+                liveAccounts.set(index, liveAccounts.get(liveAccounts.size() - 1));
+                liveAccounts.remove(liveAccounts.size() - 1);
+                start(kind);
+                json.writeStringField("email", emails[account.owner()]);
+                json.writeStringField("account", account.iban());
+                end();
+            }
+            case SET_MINIMUM_BALANCE -> {
+                start(kind);
+                json.writeStringField("account", pick(accounts).iban());
+                json.writeNumberField("amount", amount(MAX_PAYMENT));
+                end();
+            }
+            case REPORT, SPENDINGS_REPORT -> report(kind, pick(accounts));
+            case SPLIT_PAYMENT -> splitPayment();
+            case ADD_INTEREST -> {
+                start(kind);
+                json.writeStringField("account", pickSavings().iban());
+                end();
+            }
+            case CHANGE_INTEREST_RATE -> {
+                start(kind);
+                json.writeStringField("account", pickSavings().iban());
+                json.writeNumberField("interestRate", interestRate());
+                end();
+            }
+            default -> emitPhaseTwo(kind);
+        }
+    }
+
+    private void emitPhaseTwo(final Kind kind) throws IOException {
+        switch (kind) {
+            case UPGRADE_PLAN -> {
+                start(kind);
+                json.writeStringField("account", pick(accounts).iban());
+                json.writeStringField("newPlanType", pick(PLANS));
+                end();
+            }
+            case CASH_WITHDRAWAL -> {
+                if (cards.isEmpty()) {
+                    createCard();
+                    return;
+                }
+                CardRef card = pick(cards);
+                start(kind);
+                json.writeStringField("email", emails[card.account().owner()]);
+                json.writeStringField("cardNumber", card.number());
+                json.writeNumberField("amount", amount(MAX_PAYMENT));
+                json.writeStringField("location", pick(commerciants));
+                end();
+            }
+            case WITHDRAW_SAVINGS -> {
+                start(kind);
+                json.writeStringField("account", pickSavings().iban());
+                json.writeNumberField("amount", amount(MAX_PAYMENT));
+                json.writeStringField("currency", pick(currencies));
+                end();
+            }
+            case ADD_NEW_BUSINESS_ASSOCIATE -> {
+                start(kind);
+                json.writeStringField("account", pickBusiness().iban());
+                json.writeStringField("role", pick(ROLES));
+                json.writeStringField("email", pick(emails));
+                end();
+            }
+            case CHANGE_SPENDING_LIMIT, CHANGE_DEPOSIT_LIMIT -> {
+                AccountRef account = pickBusiness();
+                start(kind);
+                json.writeStringField("email", emails[account.owner()]);
+                json.writeStringField("account", account.iban());
+                json.writeNumberField("amount", amount(MAX_LIMIT));
+                end();
+            }
+            case BUSINESS_REPORT -> {
+                AccountRef account = pickBusiness();
+                start(kind);
+                json.writeNumberField("startTimestamp", random.nextInt(timestamp + 1));
+                json.writeNumberField("endTimestamp", timestamp);
+                json.writeStringField("account", account.iban());
+                json.writeStringField("type", random.nextBoolean() ? "transaction" : "commerciant");
+                end();
+            }
+            case ACCEPT_SPLIT_PAYMENT, REJECT_SPLIT_PAYMENT -> {
+                PendingSplit pending = pendingSplits.poll();
+                if (pending == null) {
+                    splitPayment();
+                    return;
+                }
+                start(kind);
+                json.writeStringField("email", pending.email());
+                json.writeStringField("splitPaymentType", pending.type());
+                end();
+            }
+            default -> throw new IllegalStateException("Unhandled command " + kind.command);
+        }
+    }
+
+    private void addAccount(final int owner) throws IOException {
+        int draw = random.nextInt(CHECK_DIGITS);
+        String type = draw < SAVINGS_PERCENT ? "savings"
+                : phase > 1 && draw < SAVINGS_PERCENT + BUSINESS_PERCENT ? "business"
+                : "classic";
+        AccountRef account = new AccountRef(ids.generateIBAN(), owner, pick(currencies), type);
+
+        start(Kind.ADD_ACCOUNT);
+        json.writeStringField("email", emails[owner]);
+        json.writeStringField("currency", account.currency());
+        json.writeStringField("accountType", type);
+        if (type.equals("savings")) {
+            json.writeNumberField("interestRate", interestRate());
+        }
+        end();
+
+        accounts.add(account);
+        liveAccounts.add(account);
+        if (type.equals("savings")) {
+            savingsAccounts.add(account);
+        } else if (type.equals("business")) {
+            businessAccounts.add(account);
+        }
+    }
+
+    private void addFunds(final AccountRef account) throws IOException {
+        start(Kind.ADD_FUNDS);
+        if (phase > 1) {
+            json.writeStringField("email", emails[account.owner()]);
+        }
+        json.writeStringField("account", account.iban());
+        json.writeNumberField("amount", amount(MAX_DEPOSIT));
+        end();
+    }
+
+    /**
+     * Cards are always created by the owner of an account that was never
+     * asked to be deleted, so the bank does assign them a number and the
+     * predicted sequence stays in step.
+     */
+    private void createCard() throws IOException {
+        if (liveAccounts.isEmpty()) {
+            addAccount(random.nextInt(emails.length));
+            return;
+        }
+        AccountRef account = pick(liveAccounts);
+        start(Kind.CREATE_CARD);
+        json.writeStringField("account", account.iban());
+        json.writeStringField("email", emails[account.owner()]);
+        end();
+        cards.add(new CardRef(ids.generateCardNumber(), account));
+    }
+
+    private void createOneTimeCard() throws IOException {
+        if (liveAccounts.isEmpty()) {
+            addAccount(random.nextInt(emails.length));
+            return;
+        }
+        AccountRef account = pick(liveAccounts);
+        start(Kind.CREATE_ONE_TIME_CARD);
+        json.writeStringField("account", account.iban());
+        json.writeStringField("email", emails[account.owner()]);
+        end();
+        ids.generateCardNumber();
+    }
+
+    private void payOnline() throws IOException {
+        if (cards.isEmpty()) {
+            createCard();
+            return;
+        }
+        CardRef card = pick(cards);
+        start(Kind.PAY_ONLINE);
+        json.writeStringField("email", emails[card.account().owner()]);
+        json.writeStringField("cardNumber", card.number());
+        json.writeNumberField("amount", amount(MAX_PAYMENT));
+        json.writeStringField("currency", pick(currencies));
+        json.writeStringField("description", "Online payment");
+        json.writeStringField("commerciant", pick(commerciants));
+        end();
+    }
+
+    private void sendMoney() throws IOException {
+        AccountRef sender = pick(accounts);
+        List<String> senderAliases = aliases.get(sender.owner());
+        String receiver = senderAliases != null && random.nextInt(CHECK_DIGITS)
+                < ALIAS_RECEIVER_PERCENT ? pick(senderAliases) : pick(accounts).iban();
+
+        start(Kind.SEND_MONEY);
+        json.writeStringField("account", sender.iban());
+        json.writeStringField("receiver", receiver);
+        json.writeNumberField("amount", amount(MAX_PAYMENT));
+        json.writeStringField("email", emails[sender.owner()]);
+        json.writeStringField("description", pick(DESCRIPTIONS));
+        end();
+    }
+
+    private void setAlias() throws IOException {
+        AccountRef account = pick(accounts);
+        List<String> userAliases = aliases.computeIfAbsent(account.owner(),
+                owner -> new ArrayList<>());
+        String alias = "Alias" + userAliases.size();
+        userAliases.add(alias);
+
+        start(Kind.SET_ALIAS);
+        json.writeStringField("email", emails[account.owner()]);
+        json.writeStringField("account", account.iban());
+        json.writeStringField("alias", alias);
+        end();
+    }
+
+    private void report(final Kind kind, final AccountRef account) throws IOException {
+        start(kind);
+        json.writeNumberField("startTimestamp", random.nextInt(timestamp + 1));
+        json.writeNumberField("endTimestamp", timestamp);
+        json.writeStringField("account", account.iban());
+        end();
+    }
+
+    /**
+     * Splits only involve accounts that were never asked to be deleted:
+     * the bank expects every account of a split to exist.
+     */
+    private void splitPayment() throws IOException {
+        if (liveAccounts.isEmpty()) {
+            addAccount(random.nextInt(emails.length));
+            return;
+        }
+        int count = Math.min(liveAccounts.size(), 2 + random.nextInt(MAX_SPLIT_ACCOUNTS - 1));
+        List<AccountRef> involved = new ArrayList<>(count);
+        while (involved.size() < count) {
+            AccountRef account = pick(liveAccounts);
+            if (!involved.contains(account)) {
+                involved.add(account);
+            }
+        }
+        double amount = amount(MAX_PAYMENT);
+        String type = random.nextBoolean() ? "equal" : "custom";
+
+        start(Kind.SPLIT_PAYMENT);
+        if (phase > 1) {
+            json.writeStringField("splitPaymentType", type);
+        }
+        json.writeArrayFieldStart("accounts");
+        for (AccountRef account : involved) {
+            json.writeString(account.iban());
+        }
+        json.writeEndArray();
+        json.writeNumberField("amount", amount);
+        if (phase > 1 && type.equals("custom")) {
+            json.writeArrayFieldStart("amountForUsers");
+            double left = amount;
+            for (int i = 0; i < count; i++) {
+                double share = i == count - 1 ? left : Math.floor(left / (count - i));
+                json.writeNumber(share);
+                left -= share;
+            }
+            json.writeEndArray();
+        }
+        json.writeStringField("currency", pick(currencies));
+        end();
+
+        if (phase > 1) {
+            for (AccountRef account : involved) {
+                pendingSplits.add(new PendingSplit(emails[account.owner()], type));
+            }
+        }
+    }
+
+    private AccountRef pickSavings() {
+        return savingsAccounts.isEmpty() ? pick(accounts) : pick(savingsAccounts);
+    }
+
+    private AccountRef pickBusiness() {
+        return businessAccounts.isEmpty() ? pick(accounts) : pick(businessAccounts);
+    }
+
+    private void start(final Kind kind) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("command", kind.command);
+    }
+
+    private void end() throws IOException {
+        json.writeNumberField("timestamp", ++timestamp);
+        json.writeEndObject();
+    }
+
+    private double amount(final int bound) {
+        return 1 + random.nextInt(bound);
+    }
+
+    private double interestRate() {
+        return Math.round(random.nextDouble() * MAX_INTEREST * CHECK_DIGITS)
+                / (double) CHECK_DIGITS;
+    }
+
+    private <T> T pick(final List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private <T> T pick(final T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private int intOption(final String name, final int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static Kind kindOf(final String command) {
+        for (Kind kind : Kind.values()) {
+            if (kind.command.equals(command)) {
+                return kind;
+            }
+        }
+        throw new IllegalArgumentException("Unknown command " + command);
+    }
+
+    private static String syntheticCurrency(final int index) {
+        char[] code = new char[CODE_LENGTH];
+        int rest = index;
+        for (int i = code.length - 1; i >= 0; i--) {
+            code[i] = (char) ('A' + rest % ALPHABET);
+            rest /= ALPHABET;
+        }
+        return new String(code);
+    }
+}
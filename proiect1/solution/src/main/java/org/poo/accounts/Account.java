@@ -1,24 +1,27 @@
 package org.poo.accounts;
 
+import org.poo.money.Money;
 import org.poo.cards.Card;
 import org.poo.cards.OneTimeCard;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.poo.transactions.ErrorTransaction;
 import org.poo.transactions.MinBalanceTransaction;
 import org.poo.transactions.MoneyTransfer;
 import org.poo.transactions.AccountCreation;
-import org.poo.transactions.Transaction;
-import org.poo.utils.Utils;
+import org.poo.transactions.TransactionLog;
 import org.poo.reporting.AccountElement;
 import org.poo.reporting.AccountReportVisitor;
 import org.poo.reporting.AccountSpendingVisitor;
 import org.poo.reporting.AccountVisitor;
+import org.poo.reporting.ReportCache;
 import org.poo.users.Database;
 import org.poo.users.User;
+import org.poo.utils.IdGenerator;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,48 +29,107 @@ import java.util.List;
 @Getter
 @Setter
 public class Account implements AccountElement {
-    protected String iban;
-    protected double balance;
-    protected double minBalance;
+    /** The IBAN, packed by {@link IdGenerator}. */
+    protected long ibanId;
+    protected long balance;
+    protected long minBalance;
     protected User owner;
     protected String currency;
-    protected List<Transaction> transactions = new ArrayList<>();
+    protected TransactionLog transactions = new TransactionLog();
     protected List<Card> cards = new ArrayList<>();
     protected String type;
+    protected final SpendingAggregates spending = new SpendingAggregates();
+    protected final ReportCache reportCache = new ReportCache();
+    /** Bumped by every change to the balance, see {@link #getVersion()}. */
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private long balanceVersion = 0;
 
     public Account(final User user, final String currency) {
         this.owner = user;
         this.currency = currency;
-        this.iban = Utils.generateIBAN();
+        this.ibanId = user.getDatabase().getIdGenerator().nextIban();
         this.transactions.add(
                 new AccountCreation(
                         this,
                         this.currency,
-                        Database.getInstance().getTimestamp()
+                        user.getDatabase().getTimestamp()
                 )
         );
         this.type = "classic";
     }
 
     /**
-     * @param amount
+     * Rebuilds an account without drawing an IBAN or recording its creation.
      */
-    public void deposit(final double amount) {
+    protected Account(final User user, final long ibanId, final String currency,
+                      final String type) {
+        this.owner = user;
+        this.ibanId = ibanId;
+        this.currency = currency;
+        this.type = type;
+    }
+
+    /**
+     * @param user
+     * @param ibanId the packed IBAN
+     * @param currency
+     * @return an account restored from a snapshot, with no history yet
+     */
+    public static Account restore(final User user, final long ibanId, final String currency) {
+        return new Account(user, ibanId, currency, "classic");
+    }
+
+    /**
+     * @return the IBAN as text
+     */
+    public String getIban() {
+        return IdGenerator.formatIban(ibanId);
+    }
+
+    /**
+     * @return the database of the run this account belongs to
+     */
+    public Database getDatabase() {
+        return owner.getDatabase();
+    }
+
+    /**
+     * @return a stamp that changes whenever the balance or the transactions
+     *         of the account do
+     */
+    public long getVersion() {
+        return balanceVersion + transactions.getModCount();
+    }
+
+    /**
+     * @param balance balance in minor units
+     */
+    public void setBalance(final long balance) {
+        this.balance = balance;
+        balanceVersion++;
+    }
+
+    /**
+     * @param amount amount in minor units
+     */
+    public void deposit(final long amount) {
         balance += amount;
+        balanceVersion++;
     }
 
     /**
-     * @param amount
+     * @param amount amount in minor units
      */
-    public void withdraw(final double amount) {
+    public void withdraw(final long amount) {
         balance -= amount;
+        balanceVersion++;
     }
 
     /**
      */
     public void createCard() {
-        cards.add(new Card(
-                Utils.generateCardNumber(),
+        addCard(new Card(
+                getDatabase().getIdGenerator().nextCardNumber(),
                 owner,
                 this
             )
@@ -77,77 +139,85 @@ public class Account implements AccountElement {
     /**
      */
     public void createOneTimeCard() {
-        cards.add(new OneTimeCard(
-                Utils.generateCardNumber(),
+        addCard(new OneTimeCard(
+                getDatabase().getIdGenerator().nextCardNumber(),
                 "12/24",
                 owner,
                 this)
         );
     }
 
+    private void addCard(final Card card) {
+        cards.add(card);
+        getDatabase().registerCard(card);
+    }
+
     /**
-     * @param amount
+     * @param amount amount in minor units
      * @param account
      * @param description
      */
     public void sendMoney(
-            final double amount,
+            final long amount,
             final Account account,
             final String description) {
         if (amount > this.balance) {
             this.transactions.add(new ErrorTransaction(
                     "Insufficient funds",
-                    Database.getInstance().getTimestamp())
+                    getDatabase().getTimestamp())
             );
             return;
         } else if (account.getMinBalance() + amount >= this.balance
                 && account.getMinBalance() > 0) {
             this.transactions.add(new ErrorTransaction(
                     "Cannot perform payment due to a minimum balance being set",
-                    Database.getInstance().getTimestamp())
+                    getDatabase().getTimestamp())
             );
             return;
         }
-        double amountReceived = amount * Database.getInstance()
-                .getExchangeRate(this.currency, account.currency);
+        long amountReceived = Money.multiply(amount, getDatabase()
+                .getExchangeRate(this.currency, account.currency));
 
         account.transactions.add(new MoneyTransfer(
-                this.iban,
-                account.iban,
+                this.ibanId,
+                account.ibanId,
                 amountReceived,
                 account.balance + amountReceived,
+                account.currency,
                 description,
-                Database.getInstance().getTimestamp(),
+                getDatabase().getTimestamp(),
                 "received")
         );
 
         this.transactions.add(new MoneyTransfer(
-                this.iban,
-                account.iban,
+                this.ibanId,
+                account.ibanId,
                 amount,
                 this.balance - amount,
+                this.currency,
                 description,
-                Database.getInstance().getTimestamp(),
+                getDatabase().getTimestamp(),
                 "sent")
         );
 
-        this.balance -= amount;
-        account.balance += amountReceived;
+        withdraw(amount);
+        account.deposit(amountReceived);
     }
 
     /**
-     * @param minBalanceValue
+     * @param minBalanceValue minimum balance in minor units
      * @param account
      */
     public void minBalanceTransaction(
-            final double minBalanceValue,
+            final long minBalanceValue,
             final Account account) {
         account.setMinBalance(minBalanceValue);
         account.getTransactions().add(new MinBalanceTransaction(
-                account.getIban(),
+                account.getIbanId(),
                 minBalanceValue,
                 account.getBalance(),
-                Database.getInstance().getTimestamp())
+                account.getCurrency(),
+                getDatabase().getTimestamp())
         );
     }
 
@@ -157,9 +227,11 @@ public class Account implements AccountElement {
      * @return
      */
     public ObjectNode getReport(final int start, final int end) {
-        AccountReportVisitor accountReportVisitor = new AccountReportVisitor(start, end);
-        accountReportVisitor.visit(this);
-        return accountReportVisitor.getRoot();
+        return reportCache.get(ReportCache.Kind.REPORT, start, end, getVersion(), () -> {
+            AccountReportVisitor accountReportVisitor = new AccountReportVisitor(start, end);
+            accountReportVisitor.visit(this);
+            return accountReportVisitor.getRoot();
+        });
     }
 
     /**
@@ -168,9 +240,12 @@ public class Account implements AccountElement {
      * @return
      */
     public ObjectNode getSpendingReport(final int start, final int end) {
-        AccountSpendingVisitor accountSpendingVisitor = new AccountSpendingVisitor(start, end);
-        accountSpendingVisitor.visit(this);
-        return accountSpendingVisitor.getRoot();
+        return reportCache.get(ReportCache.Kind.SPENDINGS, start, end, getVersion(), () -> {
+            AccountSpendingVisitor accountSpendingVisitor =
+                    new AccountSpendingVisitor(start, end);
+            accountSpendingVisitor.visit(this);
+            return accountSpendingVisitor.getRoot();
+        });
     }
 
     /**
@@ -180,25 +255,26 @@ public class Account implements AccountElement {
         if (this.balance != 0) {
             this.transactions.add(new ErrorTransaction(
                     "Account couldn't be deleted - there are funds remaining",
-                    Database.getInstance().getTimestamp())
+                    getDatabase().getTimestamp())
             );
-            return new ObjectMapper().createObjectNode()
+            return JsonNodeFactory.instance.objectNode()
                     .put(
                             "error",
                             "Account couldn't be deleted - see org.poo.transactions for details"
                     )
-                    .put("timestamp", Database.getInstance().getTimestamp());
+                    .put("timestamp", getDatabase().getTimestamp());
         }
 
-        for (Card card : this.cards) {
+        for (Card card : List.copyOf(this.cards)) {
             card.destroy();
         }
 
         this.owner.getAccounts().remove(this);
+        getDatabase().unregisterAccount(this);
 
-        return new ObjectMapper().createObjectNode()
+        return JsonNodeFactory.instance.objectNode()
                 .put("success", "Account deleted")
-                .put("timestamp", Database.getInstance().getTimestamp());
+                .put("timestamp", getDatabase().getTimestamp());
     }
 
     /**
@@ -213,13 +289,13 @@ public class Account implements AccountElement {
      * @return
      */
     public ObjectNode toJSON() {
-        ObjectNode accountNode = new ObjectMapper().createObjectNode();
-        accountNode.put("IBAN", iban);
-        accountNode.put("balance", balance);
+        ObjectNode accountNode = JsonNodeFactory.instance.objectNode();
+        accountNode.put("IBAN", getIban());
+        accountNode.put("balance", Money.toDouble(balance));
         accountNode.put("currency", currency);
         accountNode.put("type", type);
 
-        ArrayNode cardsNode = new ObjectMapper().createArrayNode();
+        ArrayNode cardsNode = JsonNodeFactory.instance.arrayNode();
         for (Card card : cards) {
             cardsNode.add(card.toJSON());
         }
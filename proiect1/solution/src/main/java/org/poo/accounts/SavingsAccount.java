@@ -1,5 +1,7 @@
 package org.poo.accounts;
 
+import org.poo.money.Money;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.poo.reporting.AccountVisitor;
@@ -11,6 +13,9 @@ import org.poo.users.User;
 @Setter
 public final class SavingsAccount extends Account {
     private double interestRate;
+    /** Slot of the account in the {@link SavingsBook} of its run, or -1. */
+    @Getter(AccessLevel.PACKAGE) @Setter(AccessLevel.PACKAGE)
+    private int bookSlot = -1;
 
     public SavingsAccount(
             final User user,
@@ -21,11 +26,43 @@ public final class SavingsAccount extends Account {
         this.interestRate = interestRate;
     }
 
+    private SavingsAccount(
+            final User user,
+            final long ibanId,
+            final String currency,
+            final double interestRate) {
+        super(user, ibanId, currency, "savings");
+        this.interestRate = interestRate;
+    }
+
+    /**
+     * @param user
+     * @param ibanId the packed IBAN
+     * @param currency
+     * @param interestRate
+     * @return an account restored from a snapshot, with no history yet
+     */
+    public static SavingsAccount restore(
+            final User user,
+            final long ibanId,
+            final String currency,
+            final double interestRate) {
+        return new SavingsAccount(user, ibanId, currency, interestRate);
+    }
+
+    /**
+     * @param interestRate
+     */
+    public void setInterestRate(final double interestRate) {
+        this.interestRate = interestRate;
+        getDatabase().getSavings().updateRate(this);
+    }
+
     /**
      * @param timestamp
      */
     public void addInterest(final int timestamp) {
-        var amountToIncrease = this.getBalance() * this.interestRate;
+        long amountToIncrease = Money.multiply(this.getBalance(), this.interestRate);
         this.setBalance(this.getBalance() + amountToIncrease);
         this.getTransactions().add(new InterestIncome(
                 timestamp,
@@ -41,7 +78,7 @@ public final class SavingsAccount extends Account {
     public void changeInterestRate(
             final int timestamp,
             final double interestRateUpdate) {
-        this.interestRate = interestRateUpdate;
+        setInterestRate(interestRateUpdate);
         this.getTransactions().add(new InterestRateChange(
                 timestamp,
                 interestRateUpdate)
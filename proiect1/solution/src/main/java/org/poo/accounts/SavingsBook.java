@@ -0,0 +1,150 @@
+package org.poo.accounts;
+
+import org.poo.money.Money;
+import org.poo.transactions.InterestIncome;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The savings accounts of a run, with their interest rates and currencies
+ * in parallel arrays, for interest runs over the whole bank. Accounts are
+ * added and removed as the database indexes them, and rates follow
+ * {@link SavingsAccount#setInterestRate(double)}.
+ * <p>
+ * Balances change with every command, so they stay on the accounts: a run
+ * gathers the balances of the accounts it covers into a scratch array,
+ * computes every interest in one loop over primitives, and writes the
+ * balances back. Accounts are independent of each other, so large runs
+ * are split into chunks that run in parallel; every account still gets
+ * its {@link InterestIncome}, exactly as {@link SavingsAccount#addInterest}
+ * would record it.
+ */
+public final class SavingsBook {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int CHUNK = 4096;
+
+    private SavingsAccount[] accounts = new SavingsAccount[INITIAL_CAPACITY];
+    private double[] rates = new double[INITIAL_CAPACITY];
+    private String[] currencies = new String[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private int[] selected = new int[0];
+    private long[] balances = new long[0];
+    private long[] interest = new long[0];
+
+    /**
+     * @return the number of accounts in the book
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param account
+     * @return whether the account is in the book
+     */
+    public boolean contains(final SavingsAccount account) {
+        int slot = account.getBookSlot();
+        return slot >= 0 && slot < size && accounts[slot] == account;
+    }
+
+    /**
+     * Adds an account, unless it is in the book already.
+     * @param account
+     */
+    public void add(final SavingsAccount account) {
+        if (contains(account)) {
+            return;
+        }
+        if (size == accounts.length) {
+            accounts = Arrays.copyOf(accounts, size * 2);
+            rates = Arrays.copyOf(rates, size * 2);
+            currencies = Arrays.copyOf(currencies, size * 2);
+        }
+        accounts[size] = account;
+        rates[size] = account.getInterestRate();
+        currencies[size] = account.getCurrency();
+        account.setBookSlot(size++);
+    }
+
+    /**
+     * Removes an account, moving the last one into its slot.
+     * @param account
+     */
+    public void remove(final SavingsAccount account) {
+        if (!contains(account)) {
+            return;
+        }
+        int slot = account.getBookSlot();
+        int last = --size;
+        accounts[slot] = accounts[last];
+        rates[slot] = rates[last];
+        currencies[slot] = currencies[last];
+        accounts[slot].setBookSlot(slot);
+        accounts[last] = null;
+        currencies[last] = null;
+        account.setBookSlot(-1);
+    }
+
+    /**
+     * @param account
+     */
+    void updateRate(final SavingsAccount account) {
+        if (contains(account)) {
+            rates[account.getBookSlot()] = account.getInterestRate();
+        }
+    }
+
+    /**
+     * Adds interest to every savings account of a currency.
+     * @param currency the currency of the accounts, or null for all of them
+     * @param timestamp
+     * @return the number of accounts that received interest
+     */
+    public int accrue(final String currency, final int timestamp) {
+        int count = select(currency);
+        int chunks = (count + CHUNK - 1) / CHUNK;
+        if (chunks > 1) {
+            IntStream.range(0, chunks).parallel()
+                    .forEach(chunk -> accrue(chunk * CHUNK,
+                            Math.min(count, (chunk + 1) * CHUNK), timestamp));
+        } else {
+            accrue(0, count, timestamp);
+        }
+        return count;
+    }
+
+    private int select(final String currency) {
+        if (selected.length < size) {
+            selected = new int[accounts.length];
+            balances = new long[accounts.length];
+            interest = new long[accounts.length];
+        }
+        int count = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (currency == null || currency.equals(currencies[slot])) {
+                selected[count++] = slot;
+            }
+        }
+        return count;
+    }
+
+    private void accrue(final int from, final int to, final int timestamp) {
+        for (int i = from; i < to; i++) {
+            balances[i] = accounts[selected[i]].getBalance();
+        }
+        for (int i = from; i < to; i++) {
+            interest[i] = Money.multiply(balances[i], rates[selected[i]]);
+        }
+        for (int i = from; i < to; i++) {
+            SavingsAccount account = accounts[selected[i]];
+            account.setBalance(balances[i] + interest[i]);
+            account.getTransactions().add(new InterestIncome(
+                    timestamp,
+                    interest[i],
+                    currencies[selected[i]])
+            );
+        }
+    }
+}
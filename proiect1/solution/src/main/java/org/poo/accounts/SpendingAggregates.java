@@ -0,0 +1,115 @@
+package org.poo.accounts;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+
+/**
+ * Card spending of one account, grouped by commerciant id. Every
+ * commerciant keeps the timestamps of its payments together with running
+ * totals, so the amount spent in any time range takes two binary searches.
+ */
+public final class SpendingAggregates {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private Series[] series = new Series[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * @param commerciant commerciant id
+     * @param timestamp
+     * @param amount amount paid, in minor units of the account's currency
+     */
+    public void record(final int commerciant, final int timestamp, final long amount) {
+        if (commerciant >= series.length) {
+            series = Arrays.copyOf(series, Math.max(commerciant + 1, series.length * 2));
+        }
+        if (series[commerciant] == null) {
+            series[commerciant] = new Series();
+        }
+        series[commerciant].add(timestamp, amount);
+        size = Math.max(size, commerciant + 1);
+    }
+
+    /**
+     * @return one more than the highest commerciant id recorded
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param commerciant commerciant id
+     * @param start first timestamp, inclusive
+     * @param end last timestamp, inclusive
+     * @return the amount spent at the commerciant in the range, in minor units, or empty if
+     *         no payment was made there in the range
+     */
+    public OptionalLong totalBetween(final int commerciant, final int start, final int end) {
+        if (commerciant >= size || series[commerciant] == null || start > end) {
+            return OptionalLong.empty();
+        }
+        return series[commerciant].totalBetween(start, end);
+    }
+
+    /**
+     * Payments to one commerciant, sorted by timestamp. {@code totals[i]}
+     * is the sum of the first {@code i} payments.
+     */
+    private static final class Series {
+        private int[] timestamps = new int[INITIAL_CAPACITY];
+        private long[] totals = new long[INITIAL_CAPACITY + 1];
+        private int size = 0;
+
+        void add(final int timestamp, final long amount) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                totals = Arrays.copyOf(totals, size * 2 + 1);
+            }
+
+            int index = upperBound(timestamp);
+            System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+            timestamps[index] = timestamp;
+            for (int i = size + 1; i > index; i--) {
+                totals[i] = totals[i - 1] + amount;
+            }
+            size++;
+        }
+
+        OptionalLong totalBetween(final int start, final int end) {
+            int low = lowerBound(start);
+            int high = upperBound(end);
+            if (low >= high) {
+                return OptionalLong.empty();
+            }
+            return OptionalLong.of(totals[high] - totals[low]);
+        }
+
+        private int lowerBound(final int timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timestamps[middle] < timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private int upperBound(final int timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timestamps[middle] <= timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.poo.cards;
+import org.poo.money.Money;
 import org.poo.accounts.Account;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 import lombok.Setter;
@@ -8,14 +9,15 @@ import org.poo.transactions.CardCreation;
 import org.poo.transactions.CardDestroy;
 import org.poo.transactions.CardPayment;
 import org.poo.transactions.ErrorTransaction;
-import org.poo.users.Database;
 import org.poo.users.User;
 import org.poo.utils.Constants;
+import org.poo.utils.IdGenerator;
 
 @Getter
 @Setter
 public class Card {
-    protected String cardNumber;
+    /** The card number, packed by {@link IdGenerator}. */
+    protected long cardNumberId;
     protected String status;
     protected User cardHolder;
     protected Account account;
@@ -28,34 +30,70 @@ public class Card {
     }
 
     public Card(
-            final String cardNumber,
+            final long cardNumberId,
             final User cardHolder,
             final Account account) {
-        this.cardNumber = cardNumber;
+        this.cardNumberId = cardNumberId;
         this.status = "active";
         this.cardHolder = cardHolder;
         this.account = account;
         account.getTransactions().add(new CardCreation(
                 this,
-                Database.getInstance().getTimestamp())
+                account.getDatabase().getTimestamp())
         );
     }
 
+    /**
+     * Rebuilds a card without recording its creation.
+     */
+    protected Card(
+            final long cardNumberId,
+            final String status,
+            final User cardHolder,
+            final Account account) {
+        this.cardNumberId = cardNumberId;
+        this.status = status;
+        this.cardHolder = cardHolder;
+        this.account = account;
+    }
+
+    /**
+     * @param cardNumberId the packed card number
+     * @param status
+     * @param cardHolder
+     * @param account
+     * @return a card restored from a snapshot
+     */
+    public static Card restore(
+            final long cardNumberId,
+            final String status,
+            final User cardHolder,
+            final Account account) {
+        return new Card(cardNumberId, status, cardHolder, account);
+    }
+
+    /**
+     * @return the card number as text
+     */
+    public String getCardNumber() {
+        return IdGenerator.formatCardNumber(cardNumberId);
+    }
+
     /**
      * @param amount
      * @param currency
      * @param commerciant
      */
     public void makePayment(
-            final double amount,
+            final long amount,
             final String currency,
             final String commerciant) {
-        double cardAmount = amount * Database.getInstance()
-                .getExchangeRate(currency, account.getCurrency());
+        long cardAmount = Money.multiply(amount, account.getDatabase()
+                .getExchangeRate(currency, account.getCurrency()));
         if (this.status.equals("frozen")) {
             account.getTransactions().add(new ErrorTransaction(
                     "The card is frozen",
-                    Database.getInstance().getTimestamp())
+                    account.getDatabase().getTimestamp())
             );
             return;
         }
@@ -63,7 +101,7 @@ public class Card {
         if (account.getBalance() < cardAmount) {
             account.getTransactions().add(new ErrorTransaction(
                     "Insufficient funds",
-                    Database.getInstance().getTimestamp())
+                    account.getDatabase().getTimestamp())
             );
             return;
         }
@@ -73,9 +111,12 @@ public class Card {
                 this,
                 cardAmount,
                 commerciant,
-                Database.getInstance().getTimestamp())
+                account.getDatabase().getTimestamp())
         );
-        Database.getInstance().getCommerciantInputs().add(commerciant);
+        account.getSpending().record(
+                account.getDatabase().internCommerciant(commerciant),
+                account.getDatabase().getTimestamp(),
+                cardAmount);
     }
 
     /**
@@ -83,9 +124,10 @@ public class Card {
      */
     public void destroy() {
         account.getCards().remove(this);
+        account.getDatabase().unregisterCard(this);
         account.getTransactions().add(new CardDestroy(
                 this,
-                Database.getInstance().getTimestamp())
+                account.getDatabase().getTimestamp())
         );
     }
 
@@ -93,7 +135,7 @@ public class Card {
      *
      */
     public void checkCardStatus() {
-        double absoluteValue = Math.abs(
+        long absoluteValue = Math.abs(
                 this.account.getBalance()
                         - this.account.getMinBalance());
 
@@ -101,12 +143,12 @@ public class Card {
             this.setStatus("frozen");
             account.getTransactions().add(new ErrorTransaction(
                     "You have reached the minimum amount of funds, the card will be frozen",
-                    Database.getInstance().getTimestamp())
+                    account.getDatabase().getTimestamp())
             );
-        } else if (absoluteValue <= Constants.MIN_BALANCE_WARNING_THRESHOLD) {
+        } else if (absoluteValue <= Money.of(Constants.MIN_BALANCE_WARNING_THRESHOLD)) {
             account.getTransactions().add(new ErrorTransaction(
                     "Warning, reaching minimum amount of funds",
-                    Database.getInstance().getTimestamp())
+                    account.getDatabase().getTimestamp())
             );
         }
     }
@@ -115,8 +157,8 @@ public class Card {
      * @return
      */
     public ObjectNode toJSON() {
-        ObjectNode objectNode = new ObjectMapper().createObjectNode();
-        objectNode.put("cardNumber", this.cardNumber);
+        ObjectNode objectNode = JsonNodeFactory.instance.objectNode();
+        objectNode.put("cardNumber", getCardNumber());
         objectNode.put("status", this.status);
         return objectNode;
     }
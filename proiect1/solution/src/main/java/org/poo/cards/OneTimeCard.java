@@ -1,18 +1,47 @@
 package org.poo.cards;
 
+import lombok.Getter;
+import org.poo.money.Money;
 import org.poo.accounts.Account;
 import org.poo.transactions.ErrorTransaction;
-import org.poo.users.Database;
 import org.poo.users.User;
 
 public final class OneTimeCard extends Card {
+    @Getter
     private boolean isUsed = false;
     public OneTimeCard(
-            final String cardNumber,
+            final long cardNumberId,
             final String expiryDate,
             final User cardHolder,
             final Account account) {
-        super(cardNumber, cardHolder, account);
+        super(cardNumberId, cardHolder, account);
+    }
+
+    private OneTimeCard(
+            final long cardNumberId,
+            final String status,
+            final User cardHolder,
+            final Account account,
+            final boolean isUsed) {
+        super(cardNumberId, status, cardHolder, account);
+        this.isUsed = isUsed;
+    }
+
+    /**
+     * @param cardNumberId the packed card number
+     * @param status
+     * @param cardHolder
+     * @param account
+     * @param isUsed
+     * @return a card restored from a snapshot
+     */
+    public static OneTimeCard restore(
+            final long cardNumberId,
+            final String status,
+            final User cardHolder,
+            final Account account,
+            final boolean isUsed) {
+        return new OneTimeCard(cardNumberId, status, cardHolder, account, isUsed);
     }
 
     @Override
@@ -22,13 +51,13 @@ public final class OneTimeCard extends Card {
 
     @Override
     public void makePayment(
-            final double amount,
+            final long amount,
             final String currency,
             final String commerciant) {
         if (isUsed) {
             account.getTransactions().add(new ErrorTransaction(
                     "Card has already been used",
-                    Database.getInstance().getTimestamp())
+                    account.getDatabase().getTimestamp())
             );
             return;
         }
@@ -36,17 +65,17 @@ public final class OneTimeCard extends Card {
         if (this.status.equals("frozen")) {
             account.getTransactions().add(new ErrorTransaction(
                     "The card is frozen",
-                    Database.getInstance().getTimestamp())
+                    account.getDatabase().getTimestamp())
             );
             return;
         }
 
-        double cardAmount = amount * Database.getInstance()
-                .getExchangeRate(currency, account.getCurrency());
+        long cardAmount = Money.multiply(amount, account.getDatabase()
+                .getExchangeRate(currency, account.getCurrency()));
         if (account.getBalance() < cardAmount) {
             account.getTransactions().add(new ErrorTransaction(
                     "Insufficient funds",
-                    Database.getInstance().getTimestamp())
+                    account.getDatabase().getTimestamp())
             );
             return;
         }
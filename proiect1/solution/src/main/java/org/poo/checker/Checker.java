@@ -1,26 +1,30 @@
 package org.poo.checker;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.poo.main.Main;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public final class Checker {
+    /**
+     * Number of output files compared at the same time. Set with
+     * -Dorg.poo.checker.parallelism=N, defaults to the number of processors.
+     */
+    private static final int PARALLELISM = Math.max(1, Integer.getInteger(
+            "org.poo.checker.parallelism", Runtime.getRuntime().availableProcessors()));
+
     private static int gitScore;
     private static int readmeScore;
     private static int totalScore = 0;
@@ -87,9 +91,12 @@ public final class Checker {
 
     /**
      * This method is used to calculate score of implementation
-     * 18 tests (80 points maximum)
+     * 18 tests (80 points maximum). It first waits for the input files still
+     * running, then compares the outputs on a pool of threads and prints
+     * their scores in the order of the tests.
      */
     private static void calculateScoreAllTests() throws IOException {
+        Main.awaitRuns();
         File directory = new File(CheckerConstants.TESTS_PATH);
         Path path = Paths.get(CheckerConstants.RESULT_PATH);
         if (!Files.exists(path)) {
@@ -99,8 +106,23 @@ public final class Checker {
                 sorted(Comparator.comparingInt(Main::fileConsumer))
                 .map(File::getName)
                 .toList();
-        for (String file : listFile) {
-            totalScore += calculateScore(file);
+
+        ExecutorService pool = Executors.newFixedThreadPool(PARALLELISM);
+        try {
+            List<Future<String>> differences = new ArrayList<>();
+            for (String file : listFile) {
+                differences.add(pool.submit(() -> checkOutput(file)));
+            }
+            for (int i = 0; i < listFile.size(); i++) {
+                totalScore += printScore(listFile.get(i), differences.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
         }
 
         System.out.println("-----------------------------------------------------");
@@ -112,7 +134,17 @@ public final class Checker {
      * @return the score of that test
      */
     public static int calculateScore(final String input) {
-        if (checkOutput(input)) {
+        return printScore(input, checkOutput(input));
+    }
+
+    /**
+     * @param input the test
+     * @param difference the first difference of its output, or null if it
+     *                   matches the reference
+     * @return the score of that test
+     */
+    private static int printScore(final String input, final String difference) {
+        if (difference == null) {
             System.out.print(input + " ");
             for (int i = 1;  i <= CheckerConstants.LEN_LONGEST_TEST_NAME - input.length(); i++) {
                 System.out.print("-");
@@ -126,6 +158,7 @@ public final class Checker {
                 System.out.print("-");
             }
             System.out.println("--------------------------------------------- FAILED (+0)");
+            System.out.println("    " + difference);
             return 0;
         }
     }
@@ -133,64 +166,21 @@ public final class Checker {
     /**
      * @param file the test you want to check
      * @return
-     *          if the two files are equal or not
+     *          null if the output matches the reference, or else where
+     *          they first differ
      */
-    private static boolean checkOutput(final String file) {
-        ObjectMapper mapper = new ObjectMapper();
-
-        SimpleModule simpleModule = new SimpleModule();
-        simpleModule.addDeserializer(Double.class, new DoubleDeserializer());
-        mapper.registerModule(simpleModule);
-
+    private static String checkOutput(final String file) {
         try {
-            JsonNode output = mapper.readTree(new File(CheckerConstants.OUT_PATH + file));
-            JsonNode ref = mapper.readTree(new File(CheckerConstants.REF_PATH + file));
-
-            output = roundDecimals(output, CheckerConstants.DECIMAL_POINTS, mapper);
-            ref = roundDecimals(ref, CheckerConstants.DECIMAL_POINTS, mapper);
-
-            return output.equals(ref);
-
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return false;
-    }
-
-    private static JsonNode roundDecimals(
-            final JsonNode node,
-            final int precision,
-            final ObjectMapper mapper) {
-        if (node.isObject()) {
-            ObjectNode objectNode = (ObjectNode) node;
-            Iterator<String> fieldNames = objectNode.fieldNames();
-            while (fieldNames.hasNext()) {
-                String fieldName = fieldNames.next();
-                objectNode.set(
-                        fieldName,
-                        roundDecimals(objectNode.get(fieldName), precision, mapper)
-                );
+            String path = OutputComparator.firstDifference(
+                    new File(CheckerConstants.OUT_PATH + file),
+                    new File(CheckerConstants.REF_PATH + file));
+            if (path == null) {
+                return null;
             }
-        } else if (node.isArray()) {
-            ArrayNode arrayNode = (ArrayNode) node;
-            for (int i = 0; i < arrayNode.size(); i++) {
-                arrayNode.set(i, roundDecimals(arrayNode.get(i), precision, mapper));
-            }
-        } else if (node.isNumber() && node.isFloatingPointNumber()) {
-            BigDecimal roundedValue = BigDecimal.valueOf(node.asDouble())
-                    .setScale(precision, RoundingMode.HALF_UP);
-            return mapper.getNodeFactory().numberNode(roundedValue);
-        } else if (node.isTextual()
-                && Pattern.matches(CheckerConstants.DECIMALS_REGEX, node.asText())) {
-            String[] words = node.asText().split(" ");
-
-            BigDecimal roundedValue = BigDecimal.valueOf(Double.parseDouble(words[0]))
-                    .setScale(precision, RoundingMode.HALF_UP);
-            String actualValue = roundedValue + " " + words[1];
-
-            return mapper.getNodeFactory().textNode(actualValue);
+            return "first difference at " + (path.isEmpty() ? "the root" : path);
+        } catch (IOException e) {
+            return "cannot compare: " + e;
         }
-        return node;
     }
 
     /**
@@ -0,0 +1,164 @@
+package org.poo.checker;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Compares an output file with its reference. Both files are walked token
+ * by token with one parser each, so neither is built into a tree, and the
+ * walk stops at the first difference. Floating numbers, and texts made of
+ * an amount and a currency, are equal when they round to the same
+ * {@link CheckerConstants#DECIMAL_POINTS} decimals; they are only rounded
+ * when their text differs.
+ * <p>
+ * Objects are equal whatever the order of their fields. The walk expects
+ * the fields in the same order, and compares the two files as trees when
+ * they are not.
+ */
+public final class OutputComparator {
+    private static final Pattern DECIMALS = Pattern.compile(CheckerConstants.DECIMALS_REGEX);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        SimpleModule simpleModule = new SimpleModule();
+        simpleModule.addDeserializer(Double.class, new DoubleDeserializer());
+        MAPPER.registerModule(simpleModule);
+    }
+
+    private OutputComparator() {
+    }
+
+    /**
+     * @param output the output file
+     * @param ref the reference file
+     * @return the JSON pointer of the first difference between the two
+     *         files, or null if they are equal
+     * @throws IOException in case of exceptions to reading
+     */
+    public static String firstDifference(final File output, final File ref) throws IOException {
+        try (JsonParser out = MAPPER.createParser(output);
+             JsonParser expected = MAPPER.createParser(ref)) {
+            int depth = 0;
+            do {
+                JsonToken token = out.nextToken();
+                if (token != expected.nextToken()) {
+                    return pathOf(expected);
+                }
+                if (token == null) {
+                    return null;
+                }
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> depth++;
+                    case END_OBJECT, END_ARRAY -> depth--;
+                    case FIELD_NAME -> {
+                        if (!out.currentName().equals(expected.currentName())) {
+                            return treeDifference(MAPPER.readTree(output), MAPPER.readTree(ref),
+                                    JsonPointer.empty());
+                        }
+                    }
+                    default -> {
+                        if (!sameScalar(out, expected)) {
+                            return pathOf(expected);
+                        }
+                    }
+                }
+            } while (depth > 0);
+            return null;
+        }
+    }
+
+    private static boolean sameScalar(final JsonParser out, final JsonParser expected)
+            throws IOException {
+        if (out.getText().equals(expected.getText())) {
+            return true;
+        }
+        return switch (out.currentToken()) {
+            case VALUE_NUMBER_FLOAT -> round(out.getDoubleValue())
+                    .equals(round(expected.getDoubleValue()));
+            case VALUE_NUMBER_INT -> out.getBigIntegerValue()
+                    .equals(expected.getBigIntegerValue());
+            case VALUE_STRING -> roundText(out.getText()).equals(roundText(expected.getText()));
+            default -> false;
+        };
+    }
+
+    private static String treeDifference(
+            final JsonNode output,
+            final JsonNode ref,
+            final JsonPointer path) {
+        if (output.getNodeType() != ref.getNodeType()) {
+            return path.toString();
+        }
+        if (ref.isObject()) {
+            if (output.size() != ref.size()) {
+                return path.toString();
+            }
+            Iterator<Map.Entry<String, JsonNode>> fields = ref.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonPointer fieldPath = path.appendProperty(field.getKey());
+                JsonNode value = output.get(field.getKey());
+                if (value == null) {
+                    return fieldPath.toString();
+                }
+                String difference = treeDifference(value, field.getValue(), fieldPath);
+                if (difference != null) {
+                    return difference;
+                }
+            }
+            return null;
+        }
+        if (ref.isArray()) {
+            for (int i = 0; i < Math.min(output.size(), ref.size()); i++) {
+                String difference = treeDifference(output.get(i), ref.get(i), path.appendIndex(i));
+                if (difference != null) {
+                    return difference;
+                }
+            }
+            return output.size() == ref.size() ? null : path.toString();
+        }
+        return sameScalar(output, ref) ? null : path.toString();
+    }
+
+    private static boolean sameScalar(final JsonNode output, final JsonNode ref) {
+        if (output.isFloatingPointNumber() && ref.isFloatingPointNumber()) {
+            return round(output.doubleValue()).equals(round(ref.doubleValue()));
+        }
+        if (output.isIntegralNumber() && ref.isIntegralNumber()) {
+            return output.bigIntegerValue().equals(ref.bigIntegerValue());
+        }
+        if (output.isTextual() && ref.isTextual()) {
+            return roundText(output.textValue()).equals(roundText(ref.textValue()));
+        }
+        return output.equals(ref);
+    }
+
+    private static BigDecimal round(final double value) {
+        return BigDecimal.valueOf(value)
+                .setScale(CheckerConstants.DECIMAL_POINTS, RoundingMode.HALF_UP);
+    }
+
+    private static String roundText(final String text) {
+        if (!DECIMALS.matcher(text).matches()) {
+            return text;
+        }
+        String[] words = text.split(" ");
+        return round(Double.parseDouble(words[0])) + " " + words[1];
+    }
+
+    private static String pathOf(final JsonParser parser) {
+        return parser.getParsingContext().pathAsPointer().toString();
+    }
+}
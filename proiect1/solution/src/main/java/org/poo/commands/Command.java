@@ -0,0 +1,194 @@
+package org.poo.commands;
+
+import java.util.List;
+
+/**
+ * A parsed command, carrying only the fields its type uses.
+ */
+public sealed interface Command {
+    /**
+     * @return the type of the command
+     */
+    CommandType type();
+
+    /**
+     * @return the timestamp the command runs at
+     */
+    int timestamp();
+
+    /**
+     * @return the email of the user issuing the command, if it names one
+     */
+    default String email() {
+        return null;
+    }
+
+    record AddAccount(String email, String currency, String accountType,
+                      double interestRate, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.ADD_ACCOUNT;
+        }
+    }
+
+    record PrintUsers(int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.PRINT_USERS;
+        }
+    }
+
+    record PrintTransactions(String email, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.PRINT_TRANSACTIONS;
+        }
+    }
+
+    record CreateCard(String email, String account, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.CREATE_CARD;
+        }
+    }
+
+    record PayOnline(String email, String cardNumber, double amount, String currency,
+                     String commerciant, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.PAY_ONLINE;
+        }
+    }
+
+    record AddFunds(String account, double amount, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.ADD_FUNDS;
+        }
+    }
+
+    record Report(String account, int startTimestamp, int endTimestamp,
+                  int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.REPORT;
+        }
+    }
+
+    record SendMoney(String email, String account, String receiver, double amount,
+                     String description, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.SEND_MONEY;
+        }
+    }
+
+    record CreateOneTimeCard(String email, String account, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.CREATE_ONE_TIME_CARD;
+        }
+    }
+
+    record SpendingsReport(String account, int startTimestamp, int endTimestamp,
+                           int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.SPENDINGS_REPORT;
+        }
+    }
+
+    record DeleteCard(String email, String cardNumber, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.DELETE_CARD;
+        }
+    }
+
+    record DeleteAccount(String email, String account, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.DELETE_ACCOUNT;
+        }
+    }
+
+    record SetAlias(String email, String alias, String account,
+                    int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.SET_ALIAS;
+        }
+    }
+
+    record SetMinBalance(String email, String account, double minBalance,
+                         int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.SET_MIN_BALANCE;
+        }
+    }
+
+    record CheckCardStatus(String cardNumber, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.CHECK_CARD_STATUS;
+        }
+    }
+
+    record AddInterest(String account, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.ADD_INTEREST;
+        }
+    }
+
+    /**
+     * Adds interest to every savings account of a currency, or to all of
+     * them when the currency is null.
+     */
+    record AccrueInterest(String currency, int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.ACCRUE_INTEREST;
+        }
+    }
+
+    record ChangeInterestRate(String account, double interestRate,
+                              int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.CHANGE_INTEREST_RATE;
+        }
+    }
+
+    /**
+     * A split payment, settled right away when it has no type, or left
+     * pending until every user involved accepts it otherwise.
+     * @param splitPaymentType "equal", "custom", or null
+     * @param amountForUsers the share of every account, for custom splits
+     */
+    record SplitPayment(List<String> accounts, double amount, String currency,
+                        String splitPaymentType, List<Double> amountForUsers,
+                        int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.SPLIT_PAYMENT;
+        }
+    }
+
+    record AcceptSplitPayment(String email, String splitPaymentType,
+                              int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.ACCEPT_SPLIT_PAYMENT;
+        }
+    }
+
+    record RejectSplitPayment(String email, String splitPaymentType,
+                              int timestamp) implements Command {
+        @Override
+        public CommandType type() {
+            return CommandType.REJECT_SPLIT_PAYMENT;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.poo.commands;
+
+import org.poo.output.OutputSink;
+import org.poo.users.Database;
+import org.poo.users.User;
+
+/**
+ * Runs one type of command.
+ * @param <C> the command payload it handles
+ */
+@FunctionalInterface
+public interface CommandHandler<C extends Command> {
+    /**
+     * @param command
+     * @param database the state of the run the command belongs to
+     * @param user the user named by the command, or null if it names none
+     *             or the email is unknown
+     * @param output
+     */
+    void handle(C command, Database database, User user, OutputSink output);
+}
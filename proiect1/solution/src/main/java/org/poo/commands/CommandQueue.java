@@ -0,0 +1,21 @@
+package org.poo.commands;
+
+import java.io.Closeable;
+
+/**
+ * Takes the commands of one run in their input order and runs them, not
+ * necessarily right away, with the outputs they would have had run one by
+ * one.
+ */
+public interface CommandQueue extends Closeable {
+    /**
+     * @param command the next command of the run
+     */
+    void submit(Command command);
+
+    /**
+     * Runs whatever is still queued.
+     */
+    @Override
+    void close();
+}
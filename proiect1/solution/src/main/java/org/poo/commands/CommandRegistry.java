@@ -0,0 +1,52 @@
+package org.poo.commands;
+
+import org.poo.output.OutputSink;
+import org.poo.users.Database;
+import org.poo.users.User;
+
+import java.util.EnumMap;
+
+/**
+ * Dispatch table from command types to their handlers.
+ */
+public final class CommandRegistry {
+    private final EnumMap<CommandType, CommandHandler<Command>> handlers =
+            new EnumMap<>(CommandType.class);
+
+    /**
+     * @param type
+     * @param handler
+     * @param <C> the payload of the command type
+     * @return this registry
+     */
+    @SuppressWarnings("unchecked")
+    public <C extends Command> CommandRegistry register(
+            final CommandType type,
+            final CommandHandler<C> handler) {
+        handlers.put(type, (CommandHandler<Command>) handler);
+        return this;
+    }
+
+    /**
+     * Sets the database timestamp, looks up the user if the command names
+     * one and runs the handler. Commands with no handler are ignored.
+     * @param database
+     * @param command
+     * @param output
+     */
+    public void dispatch(
+            final Database database,
+            final Command command,
+            final OutputSink output) {
+        CommandHandler<Command> handler = handlers.get(command.type());
+        if (handler == null) {
+            return;
+        }
+
+        database.setTimestamp(command.timestamp());
+        User user = command.type().takesEmail()
+                ? database.getUserByEmail(command.email())
+                : null;
+        handler.handle(command, database, user, output);
+    }
+}
@@ -0,0 +1,314 @@
+package org.poo.commands;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.poo.accounts.Account;
+import org.poo.cards.Card;
+import org.poo.cards.OneTimeCard;
+import org.poo.output.OutputSink;
+import org.poo.users.Database;
+import org.poo.users.User;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the commands of one run on a pool, in parallel when they touch
+ * different accounts, with the outputs of a sequential run.
+ * <p>
+ * Each command is resolved, when it is submitted, to the accounts it reads
+ * and the accounts it writes: cards stand for the account they belong to,
+ * and the user of a transfer resolves the receiver's alias. A command
+ * starts after the last earlier command that wrote one of its accounts,
+ * and a write also waits for the reads since that write, so every account
+ * sees its commands in their original order.
+ * <p>
+ * Commands that change which users, accounts and cards the indexes hold,
+ * or that draw identifiers, run alone: the scheduler waits for every
+ * command in flight, then runs them on the calling thread. This keeps the
+ * indexes and the aliases unchanged while commands run in parallel, so
+ * resolving a command on submission gives the same accounts it finds
+ * when it runs. Those are the account and card creations and deletions,
+ * aliases, payments with one-time cards (which replace the card),
+ * {@code printUsers}, split payments naming an unknown account, the split
+ * payments that wait for users to accept them, with the answers to them,
+ * since they go through the queues of the users, and interest runs over
+ * the whole bank, which write every savings account.
+ * <p>
+ * Every command writes its output entries to its own buffer, and buffers
+ * are flushed in submission order as the commands at their head finish.
+ */
+public final class CommandScheduler implements CommandQueue {
+    private static final int WINDOW = 4096;
+
+    private final CommandRegistry registry;
+    private final Database database;
+    private final OutputSink output;
+    private final Executor executor;
+
+    private final Map<Account, AccountState> accounts = new IdentityHashMap<>();
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private int lastTimestamp;
+    private boolean submitted = false;
+
+    /**
+     * @param registry
+     * @param database
+     * @param output receives the outputs of the commands, in submission order
+     * @param executor runs the commands that do not run alone
+     */
+    public CommandScheduler(
+            final CommandRegistry registry,
+            final Database database,
+            final OutputSink output,
+            final Executor executor) {
+        this.registry = registry;
+        this.database = database;
+        this.output = output;
+        this.executor = executor;
+    }
+
+    /**
+     * Schedules a command after the earlier ones it conflicts with.
+     * @param command
+     * @throws RuntimeException thrown by an earlier command, if one failed
+     */
+    @Override
+    public void submit(final Command command) {
+        flushCompleted();
+        if (pending.size() >= WINDOW) {
+            flush(pending.removeFirst());
+        }
+        lastTimestamp = command.timestamp();
+        submitted = true;
+
+        Access access = resolve(command);
+        if (access == null) {
+            drain();
+            registry.dispatch(database, command, output);
+            return;
+        }
+
+        List<CompletableFuture<?>> dependencies = new ArrayList<>();
+        for (Account account : access.reads) {
+            AccountState state = accounts.get(account);
+            if (state != null) {
+                state.addWriteTo(dependencies);
+            }
+        }
+        for (Account account : access.writes) {
+            AccountState state = accounts.get(account);
+            if (state != null) {
+                state.addWriteTo(dependencies);
+                state.addReadsTo(dependencies);
+            }
+        }
+
+        BufferedSink sink = new BufferedSink();
+        Runnable run = () -> registry.dispatch(database, command, sink);
+        CompletableFuture<Void> task = dependencies.isEmpty()
+                ? CompletableFuture.runAsync(run, executor)
+                : CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                        .thenRunAsync(run, executor);
+
+        for (Account account : access.reads) {
+            accounts.computeIfAbsent(account, key -> new AccountState()).addRead(task);
+        }
+        for (Account account : access.writes) {
+            AccountState state = accounts.computeIfAbsent(account, key -> new AccountState());
+            state.lastWrite = task;
+            state.reads.clear();
+        }
+        pending.addLast(new Pending(task, sink));
+    }
+
+    /**
+     * Waits for every submitted command and flushes the remaining outputs.
+     * The database is left at the timestamp of the last command.
+     * @throws RuntimeException thrown by a command, if one failed
+     */
+    @Override
+    public void close() {
+        drain();
+        if (submitted) {
+            database.setTimestamp(lastTimestamp);
+        }
+    }
+
+    /**
+     * @return the accounts the command touches, or null if it must run alone
+     */
+    private Access resolve(final Command command) {
+        Access access = new Access();
+        switch (command) {
+            case Command.AddFunds c -> access.write(database.getAccountByIBAN(c.account()));
+            case Command.Report c -> access.read(database.getAccountByIBAN(c.account()));
+            case Command.SpendingsReport c ->
+                    access.read(database.getAccountByIBAN(c.account()));
+            case Command.SetMinBalance c ->
+                    access.write(database.getAccountByIBAN(c.account()));
+            case Command.AddInterest c -> access.write(database.getAccountByIBAN(c.account()));
+            case Command.ChangeInterestRate c ->
+                    access.write(database.getAccountByIBAN(c.account()));
+            case Command.CheckCardStatus c ->
+                    access.write(database.getCardByNumber(c.cardNumber()));
+            case Command.PrintTransactions c -> {
+                User user = database.getUserByEmail(c.email());
+                if (user != null) {
+                    user.getAccounts().forEach(access::read);
+                }
+            }
+            case Command.PayOnline c -> {
+                User user = database.getUserByEmail(c.email());
+                Card card = user == null ? null : user.getCardByNumber(c.cardNumber());
+                if (card instanceof OneTimeCard) {
+                    return null;
+                }
+                access.write(card);
+            }
+            case Command.SendMoney c -> {
+                User user = database.getUserByEmail(c.email());
+                if (user != null) {
+                    String receiver = user.getAliases().getOrDefault(c.receiver(), c.receiver());
+                    access.write(database.getAccountByIBAN(c.account()));
+                    access.write(database.getAccountByIBAN(receiver));
+                }
+            }
+            case Command.SplitPayment c -> {
+                if (c.splitPaymentType() != null) {
+                    return null;
+                }
+                for (String iban : c.accounts()) {
+                    Account account = database.getAccountByIBAN(iban);
+                    if (account == null) {
+                        return null;
+                    }
+                    access.write(account);
+                }
+            }
+            default -> {
+                return null;
+            }
+        }
+        return access;
+    }
+
+    private void flushCompleted() {
+        while (!pending.isEmpty() && pending.peekFirst().task.isDone()) {
+            flush(pending.removeFirst());
+        }
+    }
+
+    /**
+     * Waits for every command in flight and forgets the account history,
+     * since nothing is left to wait for.
+     */
+    private void drain() {
+        while (!pending.isEmpty()) {
+            flush(pending.removeFirst());
+        }
+        accounts.clear();
+    }
+
+    private void flush(final Pending head) {
+        try {
+            head.task.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        for (ObjectNode entry : head.sink.entries) {
+            output.add(entry);
+        }
+    }
+
+    /**
+     * The accounts one command reads and writes. Unknown accounts and
+     * cards are left out: the command only reports them as not found.
+     */
+    private static final class Access {
+        private final List<Account> reads = new ArrayList<>();
+        private final List<Account> writes = new ArrayList<>();
+
+        void read(final Account account) {
+            if (account != null && !reads.contains(account) && !writes.contains(account)) {
+                reads.add(account);
+            }
+        }
+
+        void write(final Account account) {
+            if (account != null && !writes.contains(account)) {
+                reads.remove(account);
+                writes.add(account);
+            }
+        }
+
+        void write(final Card card) {
+            if (card != null) {
+                write(card.getAccount());
+            }
+        }
+    }
+
+    /**
+     * The last command that wrote an account and the commands that read it
+     * since.
+     */
+    private static final class AccountState {
+        private static final int PRUNE_AT = 64;
+
+        private CompletableFuture<?> lastWrite;
+        private final List<CompletableFuture<?>> reads = new ArrayList<>();
+
+        void addWriteTo(final List<CompletableFuture<?>> dependencies) {
+            if (lastWrite != null && !lastWrite.isDone()) {
+                dependencies.add(lastWrite);
+            }
+        }
+
+        void addReadsTo(final List<CompletableFuture<?>> dependencies) {
+            for (CompletableFuture<?> read : reads) {
+                if (!read.isDone()) {
+                    dependencies.add(read);
+                }
+            }
+        }
+
+        /**
+         * Records a read, dropping the finished ones once they pile up on
+         * an account that is read far more often than written.
+         */
+        void addRead(final CompletableFuture<?> read) {
+            if (reads.size() >= PRUNE_AT) {
+                reads.removeIf(CompletableFuture::isDone);
+            }
+            reads.add(read);
+        }
+    }
+
+    private record Pending(CompletableFuture<Void> task, BufferedSink sink) {
+    }
+
+    /**
+     * Holds the output entries of one command until it is its turn.
+     */
+    private static final class BufferedSink implements OutputSink {
+        private final List<ObjectNode> entries = new ArrayList<>(1);
+
+        @Override
+        public void add(final ObjectNode entry) {
+            entries.add(entry);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
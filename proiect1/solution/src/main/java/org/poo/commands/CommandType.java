@@ -0,0 +1,121 @@
+package org.poo.commands;
+
+import lombok.Getter;
+import org.poo.fileio.CommandInput;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Every command the bank understands, with its name in the input files,
+ * whether it names a user through an email and how its typed payload is
+ * read from a {@link CommandInput}.
+ */
+public enum CommandType {
+    ADD_ACCOUNT("addAccount", true, input -> new Command.AddAccount(
+            input.getEmail(), input.getCurrency(), input.getAccountType(),
+            input.getInterestRate(), input.getTimestamp())),
+    PRINT_USERS("printUsers", false, input -> new Command.PrintUsers(
+            input.getTimestamp())),
+    PRINT_TRANSACTIONS("printTransactions", true, input -> new Command.PrintTransactions(
+            input.getEmail(), input.getTimestamp())),
+    CREATE_CARD("createCard", true, input -> new Command.CreateCard(
+            input.getEmail(), input.getAccount(), input.getTimestamp())),
+    PAY_ONLINE("payOnline", true, input -> new Command.PayOnline(
+            input.getEmail(), input.getCardNumber(), input.getAmount(),
+            input.getCurrency(), input.getCommerciant(), input.getTimestamp())),
+    ADD_FUNDS("addFunds", false, input -> new Command.AddFunds(
+            input.getAccount(), input.getAmount(), input.getTimestamp())),
+    REPORT("report", false, input -> new Command.Report(
+            input.getAccount(), input.getStartTimestamp(), input.getEndTimestamp(),
+            input.getTimestamp())),
+    SEND_MONEY("sendMoney", true, input -> new Command.SendMoney(
+            input.getEmail(), input.getAccount(), input.getReceiver(), input.getAmount(),
+            input.getDescription(), input.getTimestamp())),
+    CREATE_ONE_TIME_CARD("createOneTimeCard", true, input -> new Command.CreateOneTimeCard(
+            input.getEmail(), input.getAccount(), input.getTimestamp())),
+    SPENDINGS_REPORT("spendingsReport", false, input -> new Command.SpendingsReport(
+            input.getAccount(), input.getStartTimestamp(), input.getEndTimestamp(),
+            input.getTimestamp())),
+    DELETE_CARD("deleteCard", true, input -> new Command.DeleteCard(
+            input.getEmail(), input.getCardNumber(), input.getTimestamp())),
+    DELETE_ACCOUNT("deleteAccount", true, input -> new Command.DeleteAccount(
+            input.getEmail(), input.getAccount(), input.getTimestamp())),
+    SET_ALIAS("setAlias", true, input -> new Command.SetAlias(
+            input.getEmail(), input.getAlias(), input.getAccount(), input.getTimestamp())),
+    SET_MIN_BALANCE("setMinBalance", true, input -> new Command.SetMinBalance(
+            input.getEmail(), input.getAccount(), input.getMinBalance(), input.getTimestamp())),
+    CHECK_CARD_STATUS("checkCardStatus", false, input -> new Command.CheckCardStatus(
+            input.getCardNumber(), input.getTimestamp())),
+    ADD_INTEREST("addInterest", false, input -> new Command.AddInterest(
+            input.getAccount(), input.getTimestamp())),
+    ACCRUE_INTEREST("accrueInterest", false, input -> new Command.AccrueInterest(
+            input.getCurrency(), input.getTimestamp())),
+    CHANGE_INTEREST_RATE("changeInterestRate", false, input -> new Command.ChangeInterestRate(
+            input.getAccount(), input.getInterestRate(), input.getTimestamp())),
+    SPLIT_PAYMENT("splitPayment", false, input -> new Command.SplitPayment(
+            input.getAccounts(), input.getAmount(), input.getCurrency(),
+            input.getSplitPaymentType(), input.getAmountForUsers(), input.getTimestamp())),
+    ACCEPT_SPLIT_PAYMENT("acceptSplitPayment", true, input -> new Command.AcceptSplitPayment(
+            input.getEmail(), input.getSplitPaymentType(), input.getTimestamp())),
+    REJECT_SPLIT_PAYMENT("rejectSplitPayment", true, input -> new Command.RejectSplitPayment(
+            input.getEmail(), input.getSplitPaymentType(), input.getTimestamp()));
+
+    private static final HashMap<String, CommandType> BY_NAME = new HashMap<>();
+
+    private static final Set<CommandType> READ_ONLY =
+            EnumSet.of(PRINT_USERS, PRINT_TRANSACTIONS, REPORT, SPENDINGS_REPORT);
+
+    static {
+        for (CommandType type : values()) {
+            BY_NAME.put(type.name, type);
+        }
+    }
+
+    @Getter
+    private final String name;
+    private final boolean takesEmail;
+    private final Function<CommandInput, Command> parser;
+
+    CommandType(
+            final String name,
+            final boolean takesEmail,
+            final Function<CommandInput, Command> parser) {
+        this.name = name;
+        this.takesEmail = takesEmail;
+        this.parser = parser;
+    }
+
+    /**
+     * @return whether the command names a user that has to be looked up
+     */
+    public boolean takesEmail() {
+        return takesEmail;
+    }
+
+    /**
+     * @return whether running the command can change the state of the bank
+     */
+    public boolean changesState() {
+        return !READ_ONLY.contains(this);
+    }
+
+    /**
+     * @param name the command name used in the input files
+     * @return the command type, or null if the name is unknown
+     */
+    public static CommandType fromName(final String name) {
+        return BY_NAME.get(name);
+    }
+
+    /**
+     * @param input
+     * @return the typed command, or null if the command name is unknown
+     */
+    public static Command parse(final CommandInput input) {
+        CommandType type = fromName(input.getCommand());
+        return type == null ? null : type.parser.apply(input);
+    }
+}
@@ -0,0 +1,109 @@
+package org.poo.commands;
+
+import org.poo.accounts.Account;
+import org.poo.money.Money;
+import org.poo.output.OutputSink;
+import org.poo.users.Database;
+import org.poo.utils.IdGenerator;
+
+/**
+ * Runs consecutive {@code addFunds} commands as one batch of deposits, and
+ * every other command right away.
+ * <p>
+ * A deposit only changes the balance of its account and reports nothing
+ * unless the account is unknown, so no command of a run of deposits can
+ * observe the others: the run is held back until another command comes,
+ * then its accounts are resolved together, back-to-back deposits to the
+ * same account are summed, and the sums are applied in one pass. Amounts
+ * are converted to minor units one by one, as a single deposit would, so
+ * the sums are exact and the balances are those of a sequential run.
+ * Deposits to unknown accounts run as single commands, in their original
+ * order, to report their errors.
+ */
+public final class FundingBatch implements CommandQueue {
+    private static final int CAPACITY = 1024;
+
+    private final CommandRegistry registry;
+    private final Database database;
+    private final OutputSink output;
+
+    private final Command.AddFunds[] deposits = new Command.AddFunds[CAPACITY];
+    private final long[] ibanIds = new long[CAPACITY];
+    private final Account[] accounts = new Account[CAPACITY];
+    private final long[] sums = new long[CAPACITY];
+    private int size = 0;
+
+    /**
+     * @param registry runs the commands that are not deposits
+     * @param database
+     * @param output
+     */
+    public FundingBatch(
+            final CommandRegistry registry,
+            final Database database,
+            final OutputSink output) {
+        this.registry = registry;
+        this.database = database;
+        this.output = output;
+    }
+
+    /**
+     * Holds a deposit back, or runs the deposits held so far and then the
+     * command.
+     * @param command
+     */
+    @Override
+    public void submit(final Command command) {
+        if (command instanceof Command.AddFunds deposit) {
+            deposits[size] = deposit;
+            ibanIds[size] = IdGenerator.parseIban(deposit.account());
+            if (++size == CAPACITY) {
+                flush();
+            }
+            return;
+        }
+        flush();
+        registry.dispatch(database, command, output);
+    }
+
+    /**
+     * Runs the deposits held so far.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void flush() {
+        if (size == 0) {
+            return;
+        }
+
+        database.getAccountsByIBAN(ibanIds, accounts, size);
+
+        // coalesce in place: accounts[0..runs) get sums[0..runs)
+        int runs = 0;
+        for (int i = 0; i < size; i++) {
+            Account account = accounts[i];
+            if (account == null) {
+                registry.dispatch(database, deposits[i], output);
+            } else if (runs > 0 && accounts[runs - 1] == account) {
+                sums[runs - 1] += Money.of(deposits[i].amount());
+            } else {
+                accounts[runs] = account;
+                sums[runs++] = Money.of(deposits[i].amount());
+            }
+        }
+
+        for (int run = 0; run < runs; run++) {
+            accounts[run].deposit(sums[run]);
+        }
+        database.setTimestamp(deposits[size - 1].timestamp());
+
+        for (int i = 0; i < size; i++) {
+            deposits[i] = null;
+            accounts[i] = null;
+        }
+        size = 0;
+    }
+}
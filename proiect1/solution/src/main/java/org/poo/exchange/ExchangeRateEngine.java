@@ -0,0 +1,347 @@
+package org.poo.exchange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exchange rates between every pair of known currencies, over time.
+ * Currency codes are interned to small ids. Every pair keeps all of its
+ * rate revisions, and each distinct revision timestamp opens an epoch.
+ * Every epoch has the transitive closure of the rates valid at its start,
+ * as a dense matrix with one row per source currency. A missing rate is
+ * stored as 0, since every real rate is positive.
+ * <p>
+ * Lookups read the matrices of all epochs from an immutable
+ * {@link Closure}, published through a volatile field, and take no lock,
+ * so commands and input files converting money in parallel do not wait
+ * on each other. Changes are synchronized. A revision unpublishes the
+ * closure; the next lookup builds the matrices of the revised epoch and
+ * every later one, keeps the earlier ones, and publishes the result. The
+ * rates loaded one by one at setup are thus closed over once.
+ */
+public final class ExchangeRateEngine {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final Map<String, Integer> currencyIds = new ConcurrentHashMap<>();
+    private final List<String> currencies = new ArrayList<>();
+
+    private RateRevisions[][] pairs = new RateRevisions[INITIAL_CAPACITY][INITIAL_CAPACITY];
+
+    private int[] epochStarts = new int[INITIAL_CAPACITY];
+    private int epochCount = 0;
+
+    /** What lookups read, or null after a revision until the next lookup. */
+    private volatile Closure closure = Closure.EMPTY;
+    /** The last closure built, whose epochs before {@link #staleFrom} still hold. */
+    private Closure built = Closure.EMPTY;
+    /** The start of the first epoch revised since {@link #built}. */
+    private int staleFrom = Integer.MAX_VALUE;
+
+    /**
+     * @param currency
+     * @return the id of the currency, allocating one if it is new
+     */
+    public synchronized int intern(final String currency) {
+        Integer id = currencyIds.get(currency);
+        if (id != null) {
+            return id;
+        }
+
+        int newId = currencies.size();
+        currencies.add(currency);
+        currencyIds.put(currency, newId);
+        if (newId == pairs.length) {
+            RateRevisions[][] grown = new RateRevisions[newId * 2][newId * 2];
+            for (int i = 0; i < newId; i++) {
+                System.arraycopy(pairs[i], 0, grown[i], 0, newId);
+            }
+            pairs = grown;
+        }
+        return newId;
+    }
+
+    /**
+     * @param currency
+     * @return the id of the currency, or -1 if it was never seen
+     */
+    public int getId(final String currency) {
+        Integer id = currency == null ? null : currencyIds.get(currency);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Records a rate revision, and its inverse, valid from the given
+     * timestamp on. The closure of its epoch and of every later one is
+     * built again on the next lookup.
+     * @param from
+     * @param to
+     * @param rate
+     * @param timestamp
+     */
+    public synchronized void addRate(
+            final String from,
+            final String to,
+            final double rate,
+            final int timestamp) {
+        int a = intern(from);
+        int b = intern(to);
+
+        RateRevisions revisions = pairs[a][b];
+        if (revisions == null) {
+            revisions = new RateRevisions();
+            pairs[a][b] = revisions;
+            pairs[b][a] = revisions;
+        }
+        revisions.put(timestamp, a < b ? rate : 1 / rate);
+
+        openEpoch(timestamp);
+        staleFrom = Math.min(staleFrom, timestamp);
+        closure = null;
+    }
+
+    /**
+     * @param from currency id
+     * @param to currency id
+     * @param timestamp
+     * @return the rate valid at the timestamp, or 0 if there is no chain
+     *         of rates between the two currencies at that time
+     */
+    public double getRate(final int from, final int to, final int timestamp) {
+        Closure current = closure;
+        if (current == null) {
+            current = publish();
+        }
+        return current.rate(from, to, timestamp);
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @param timestamp
+     * @return the rate between the two currencies valid at the timestamp
+     * @throws IllegalArgumentException if there is no chain of rates between them
+     */
+    public double getRate(final String from, final String to, final int timestamp) {
+        if (from.equals(to)) {
+            return 1;
+        }
+
+        int a = getId(from);
+        int b = getId(to);
+        double rate = a < 0 || b < 0 ? 0 : getRate(a, b, timestamp);
+        if (rate == 0) {
+            throw new IllegalArgumentException("No exchange rate from " + from + " to " + to
+                    + " at timestamp " + timestamp);
+        }
+        return rate;
+    }
+
+    /**
+     * @return the known currency codes, in id order
+     */
+    public List<String> getCurrencies() {
+        return Collections.unmodifiableList(currencies);
+    }
+
+    /**
+     * Hands every rate revision to the visitor, pair by pair, as a rate from
+     * the lower currency id to the higher one. Interning the currencies in
+     * id order and adding the revisions back rebuilds the same rates.
+     * @param visitor
+     */
+    public synchronized void forEachRevision(final RevisionVisitor visitor) {
+        int n = currencies.size();
+        for (int a = 0; a < n; a++) {
+            for (int b = a + 1; b < n; b++) {
+                RateRevisions revisions = pairs[a][b];
+                if (revisions == null) {
+                    continue;
+                }
+                for (int i = 0; i < revisions.size; i++) {
+                    visitor.revision(currencies.get(a), currencies.get(b),
+                            revisions.rates[i], revisions.timestamps[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets every currency, rate and epoch.
+     */
+    public synchronized void clear() {
+        currencyIds.clear();
+        currencies.clear();
+        pairs = new RateRevisions[INITIAL_CAPACITY][INITIAL_CAPACITY];
+        epochStarts = new int[INITIAL_CAPACITY];
+        epochCount = 0;
+        built = Closure.EMPTY;
+        staleFrom = Integer.MAX_VALUE;
+        closure = Closure.EMPTY;
+    }
+
+    /**
+     * Builds the matrices of the epochs revised since the last build and
+     * publishes them with the others, unless another lookup already did.
+     * Epochs only open at a revision, so the ones before {@link #staleFrom}
+     * are those of {@link #built}, in the same order.
+     */
+    private synchronized Closure publish() {
+        if (closure != null) {
+            return closure;
+        }
+
+        double[][][] matrices = new double[epochCount][][];
+        for (int e = 0; e < epochCount; e++) {
+            matrices[e] = epochStarts[e] < staleFrom
+                    ? built.matrices[e] : computeMatrix(epochStarts[e]);
+        }
+        built = new Closure(Arrays.copyOf(epochStarts, epochCount), matrices);
+        staleFrom = Integer.MAX_VALUE;
+        closure = built;
+        return built;
+    }
+
+    /**
+     * Adds the epoch starting at the timestamp, if it does not exist yet.
+     */
+    private void openEpoch(final int timestamp) {
+        int index = Arrays.binarySearch(epochStarts, 0, epochCount, timestamp);
+        if (index >= 0) {
+            return;
+        }
+
+        index = -index - 1;
+        if (epochCount == epochStarts.length) {
+            epochStarts = Arrays.copyOf(epochStarts, epochCount * 2);
+        }
+        System.arraycopy(epochStarts, index, epochStarts, index + 1, epochCount - index);
+        epochStarts[index] = timestamp;
+        epochCount++;
+    }
+
+    private double[][] computeMatrix(final int timestamp) {
+        double[][] matrix = new double[currencies.size()][];
+        for (int source = 0; source < matrix.length; source++) {
+            matrix[source] = computeRow(source, timestamp);
+        }
+        return matrix;
+    }
+
+    /**
+     * Breadth-first walk from a currency over the rates valid at the
+     * timestamp, so each derived rate follows a shortest chain of rates.
+     */
+    private double[] computeRow(final int source, final int timestamp) {
+        int n = currencies.size();
+        double[] row = new double[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+
+        row[source] = 1;
+        queue[tail++] = source;
+        while (head < tail) {
+            int from = queue[head++];
+            for (int to = 0; to < n; to++) {
+                RateRevisions revisions = pairs[from][to];
+                if (revisions == null || row[to] != 0) {
+                    continue;
+                }
+
+                double rate = revisions.rateAt(timestamp);
+                if (rate != 0) {
+                    row[to] = row[from] * (from < to ? rate : 1 / rate);
+                    queue[tail++] = to;
+                }
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Every revision of one currency pair, sorted by timestamp. Rates are
+     * stored from the lower currency id to the higher one.
+     */
+    private static final class RateRevisions {
+        private int[] timestamps = new int[1];
+        private double[] rates = new double[1];
+        private int size = 0;
+
+        void put(final int timestamp, final double rate) {
+            int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+            if (index >= 0) {
+                rates[index] = rate;
+                return;
+            }
+
+            index = -index - 1;
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                rates = Arrays.copyOf(rates, size * 2);
+            }
+            System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+            System.arraycopy(rates, index, rates, index + 1, size - index);
+            timestamps[index] = timestamp;
+            rates[index] = rate;
+            size++;
+        }
+
+        double rateAt(final int timestamp) {
+            if (size > 0 && timestamps[size - 1] <= timestamp) {
+                return rates[size - 1];
+            }
+
+            int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+            index = index >= 0 ? index : -index - 2;
+            return index >= 0 ? rates[index] : 0;
+        }
+    }
+
+    /**
+     * The closure matrices of every epoch, sorted by the timestamp the
+     * epoch starts at. Never changed once built.
+     */
+    private static final class Closure {
+        static final Closure EMPTY = new Closure(new int[0], new double[0][][]);
+
+        private final int[] starts;
+        private final double[][][] matrices;
+
+        Closure(final int[] starts, final double[][][] matrices) {
+            this.starts = starts;
+            this.matrices = matrices;
+        }
+
+        double rate(final int from, final int to, final int timestamp) {
+            int e = starts.length - 1;
+            if (e >= 0 && starts[e] > timestamp) {
+                int index = Arrays.binarySearch(starts, timestamp);
+                e = index >= 0 ? index : -index - 2;
+            }
+            if (e < 0) {
+                return 0;
+            }
+
+            double[][] matrix = matrices[e];
+            return from < matrix.length && to < matrix.length ? matrix[from][to] : 0;
+        }
+    }
+
+    /**
+     * Receives the rate revisions of an engine.
+     */
+    @FunctionalInterface
+    public interface RevisionVisitor {
+        /**
+         * @param from
+         * @param to
+         * @param rate
+         * @param timestamp the timestamp the rate is valid from
+         */
+        void revision(String from, String to, double rate, int timestamp);
+    }
+}
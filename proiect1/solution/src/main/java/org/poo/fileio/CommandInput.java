@@ -26,4 +26,6 @@ public final class CommandInput {
     private String accountType;
     private double interestRate;
     private List<String> accounts;
+    private String splitPaymentType;
+    private List<Double> amountForUsers;
 }
@@ -0,0 +1,100 @@
+package org.poo.fileio;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads an input file section by section instead of binding it whole.
+ * Users, exchange rates and commerciants are bound as usual and handed
+ * over as one setup object; commands are then pulled one at a time and
+ * handed over as soon as they are parsed.
+ */
+public final class StreamingInputReader {
+    private final ObjectMapper mapper;
+    private final File file;
+
+    public StreamingInputReader(final ObjectMapper mapper, final File file) {
+        this.mapper = mapper;
+        this.file = file;
+    }
+
+    /**
+     * Commands are only streamed if the users and the exchange rates come
+     * before them in the file. Otherwise they are buffered until the rest
+     * of the setup has been read.
+     * @param onSetup receives the setup sections, with no commands, exactly once
+     * @param onCommand receives every command, in file order
+     * @throws IOException in case of exceptions to reading
+     */
+    public void read(
+            final Consumer<ObjectInput> onSetup,
+            final Consumer<CommandInput> onCommand) throws IOException {
+        ObjectInput setup = new ObjectInput();
+        List<CommandInput> buffered = new ArrayList<>();
+        boolean setupDone = false;
+
+        try (JsonParser parser = mapper.createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected an object at the root of " + file.getName());
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String section = parser.currentName();
+                parser.nextToken();
+                switch (section) {
+                    case "users":
+                        setup.setUsers(mapper.readValue(parser, UserInput[].class));
+                        break;
+                    case "exchangeRates":
+                        setup.setExchangeRates(mapper.readValue(parser, ExchangeInput[].class));
+                        break;
+                    case "commerciants":
+                        setup.setCommerciants(
+                                mapper.readValue(parser, CommerciantInput[].class));
+                        break;
+                    case "commands":
+                        if (parser.currentToken() != JsonToken.START_ARRAY) {
+                            // null, or anything else that holds no commands
+                            parser.skipChildren();
+                            break;
+                        }
+                        if (!setupDone && setup.getUsers() != null
+                                && setup.getExchangeRates() != null) {
+                            onSetup.accept(setup);
+                            setupDone = true;
+                        }
+                        for (JsonToken element = parser.nextToken();
+                             element != JsonToken.END_ARRAY && element != null;
+                             element = parser.nextToken()) {
+                            if (element != JsonToken.START_OBJECT) {
+                                parser.skipChildren();
+                                continue;
+                            }
+                            CommandInput command = mapper.readValue(parser, CommandInput.class);
+                            if (setupDone) {
+                                onCommand.accept(command);
+                            } else {
+                                buffered.add(command);
+                            }
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+
+        if (!setupDone) {
+            onSetup.accept(setup);
+            buffered.forEach(onCommand);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.poo.journal;
+
+import org.poo.commands.Command;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead log of the operations that change the bank:
+ * the users and exchange rates loaded at setup, then every state-changing
+ * command before it runs. Replaying the journal through the same code
+ * rebuilds the whole state, histories and generated identifiers included.
+ * <p>
+ * The file is a header followed by records, each made of its length, a
+ * CRC32C of its bytes and the bytes themselves. Records are copied into a
+ * memory-mapped region of the file, and the region is forced to disk once
+ * per group of {@code groupSize} records, on {@link #sync()} and on
+ * {@link #close()}; a crash loses at most the last, unforced group. A torn
+ * or zeroed tail fails its length or checksum and ends the log.
+ */
+public final class Journal implements Closeable {
+    static final int MAGIC = 0x504F4F4A;
+    static final int VERSION = 1;
+    static final int FILE_HEADER = 2 * Integer.BYTES;
+    static final int RECORD_HEADER = 2 * Integer.BYTES;
+
+    private static final long REGION_SIZE = 16L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int groupSize;
+    private final RecordCodec codec = new RecordCodec();
+    private final CRC32C crc = new CRC32C();
+
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long position;
+    private long syncedPosition;
+    private long lastLsn;
+    private int pending = 0;
+
+    private Journal(final FileChannel channel, final int groupSize,
+                    final long position, final long lastLsn) {
+        this.channel = channel;
+        this.groupSize = Math.max(1, groupSize);
+        this.position = position;
+        this.syncedPosition = position;
+        this.lastLsn = lastLsn;
+    }
+
+    /**
+     * Starts an empty journal, replacing the file if it exists.
+     * @param path
+     * @param groupSize number of records forced to disk together
+     * @return the journal
+     * @throws IOException in case of exceptions to writing
+     */
+    public static Journal create(final Path path, final int groupSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).putInt(VERSION);
+        channel.write(header.flip(), 0);
+        channel.force(true);
+        return new Journal(channel, groupSize, FILE_HEADER, 0);
+    }
+
+    /**
+     * Continues an existing journal after its last valid record. Anything
+     * past that record, such as a torn write, is overwritten.
+     * @param path
+     * @param groupSize number of records forced to disk together
+     * @return the journal
+     * @throws IOException in case of exceptions to reading / writing
+     */
+    public static Journal open(final Path path, final int groupSize) throws IOException {
+        JournalReader.Result end = JournalReader.read(path, Long.MAX_VALUE, null);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.truncate(end.endOffset());
+        return new Journal(channel, groupSize, end.endOffset(), end.lastLsn());
+    }
+
+    /**
+     * @param firstName
+     * @param lastName
+     * @param email
+     * @return the sequence number of the record
+     */
+    public long appendUser(final String firstName, final String lastName, final String email) {
+        codec.start(++lastLsn, RecordCodec.USER);
+        codec.user(firstName, lastName, email);
+        return append();
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @param rate
+     * @param timestamp the timestamp the rate is valid from
+     * @return the sequence number of the record
+     */
+    public long appendExchangeRate(final String from, final String to, final double rate,
+                                   final int timestamp) {
+        codec.start(++lastLsn, RecordCodec.EXCHANGE_RATE);
+        codec.exchangeRate(from, to, rate, timestamp);
+        return append();
+    }
+
+    /**
+     * @param command a command about to run
+     * @return the sequence number of the record
+     */
+    public long appendCommand(final Command command) {
+        codec.start(++lastLsn, RecordCodec.COMMAND);
+        codec.command(command);
+        return append();
+    }
+
+    /**
+     * @return the sequence number of the last record appended
+     */
+    public long getLastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Forces every appended record to disk.
+     */
+    public void sync() {
+        if (region != null && position > syncedPosition) {
+            region.force((int) (syncedPosition - regionStart),
+                    (int) (position - syncedPosition));
+        }
+        syncedPosition = position;
+        pending = 0;
+    }
+
+    /**
+     * Forces the journal to disk and trims the file to its last record.
+     * @throws IOException in case of exceptions to writing
+     */
+    @Override
+    public void close() throws IOException {
+        sync();
+        region = null;
+        channel.truncate(position);
+        channel.force(true);
+        channel.close();
+    }
+
+    private long append() {
+        int size = codec.size();
+        crc.reset();
+        crc.update(codec.bytes(), 0, size);
+
+        ensureRegion(RECORD_HEADER + size);
+        int offset = (int) (position - regionStart);
+        region.putInt(offset, size);
+        region.putInt(offset + Integer.BYTES, (int) crc.getValue());
+        region.put(offset + RECORD_HEADER, codec.bytes(), 0, size);
+        position += RECORD_HEADER + size;
+
+        if (++pending >= groupSize) {
+            sync();
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Maps a new region starting at the end of the log when the record
+     * does not fit in the current one. Mapping past the end of the file
+     * grows it, zero-filled.
+     */
+    private void ensureRegion(final int length) {
+        if (region != null && position + length <= regionStart + region.capacity()) {
+            return;
+        }
+        sync();
+        try {
+            regionStart = position;
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart,
+                    Math.max(REGION_SIZE, length));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
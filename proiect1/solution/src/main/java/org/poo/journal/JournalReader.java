@@ -0,0 +1,91 @@
+package org.poo.journal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+/**
+ * Sequential reader of a journal. Reading stops at the first record whose
+ * length or checksum is wrong, which is where the last write was cut off.
+ */
+public final class JournalReader {
+    private static final int MAX_RECORD = 64 * 1024 * 1024;
+
+    private JournalReader() {
+    }
+
+    /**
+     * Where a journal ends.
+     * @param lastLsn sequence number of the last valid record, 0 if none
+     * @param endOffset file offset right after the last valid record
+     */
+    public record Result(long lastLsn, long endOffset) {
+    }
+
+    /**
+     * @param path
+     * @param afterLsn only the records after this sequence number are visited
+     * @param visitor receives the records, or null to only find the end
+     * @return the end of the valid part of the journal
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static Result read(final Path path, final long afterLsn, final JournalVisitor visitor)
+            throws IOException {
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            if (in.readInt() != Journal.MAGIC) {
+                throw new IOException(path + " is not a journal");
+            }
+            int version = in.readInt();
+            if (version != Journal.VERSION) {
+                throw new IOException(path + " has unsupported journal version " + version);
+            }
+
+            long offset = Journal.FILE_HEADER;
+            long lastLsn = 0;
+            CRC32C crc = new CRC32C();
+            byte[] bytes = new byte[0];
+            while (true) {
+                int size;
+                int checksum;
+                try {
+                    size = in.readInt();
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (size <= Long.BYTES || size > MAX_RECORD) {
+                    break;
+                }
+
+                if (bytes.length < size) {
+                    bytes = new byte[Math.max(size, bytes.length * 2)];
+                }
+                if (in.readNBytes(bytes, 0, size) < size) {
+                    break;
+                }
+                crc.reset();
+                crc.update(bytes, 0, size);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(bytes, 0, size);
+                long lsn = record.getLong();
+                byte kind = record.get();
+                if (visitor != null && lsn > afterLsn) {
+                    RecordCodec.decode(kind, record, visitor);
+                }
+                lastLsn = lsn;
+                offset += Journal.RECORD_HEADER + size;
+            }
+            return new Result(lastLsn, offset);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.poo.journal;
+
+import org.poo.commands.Command;
+
+/**
+ * Receives the records of a journal, in the order they were appended.
+ */
+public interface JournalVisitor {
+    /**
+     * @param firstName
+     * @param lastName
+     * @param email
+     */
+    void user(String firstName, String lastName, String email);
+
+    /**
+     * @param from
+     * @param to
+     * @param rate
+     * @param timestamp the timestamp the rate is valid from
+     */
+    void exchangeRate(String from, String to, double rate, int timestamp);
+
+    /**
+     * @param command a command that changes the state of the bank
+     */
+    void command(Command command);
+}
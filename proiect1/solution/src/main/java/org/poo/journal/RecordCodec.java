@@ -0,0 +1,348 @@
+package org.poo.journal;
+
+import org.poo.commands.Command;
+import org.poo.commands.CommandType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary layout of the journal records. A record is its sequence number,
+ * a kind byte and a payload. Strings are a length and UTF-8 bytes, with -1
+ * for null, and lists a size, -1 for null, and their elements. A command is
+ * tagged with the name of its {@link CommandType}, as in the input files,
+ * followed by its fields, in the order the encoders and decoders below
+ * list them; the layout only changes when they are edited, not when a
+ * command record is.
+ */
+final class RecordCodec {
+    static final byte USER = 1;
+    static final byte EXCHANGE_RATE = 2;
+    static final byte COMMAND = 3;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final Map<CommandType, byte[]> TAGS = new EnumMap<>(CommandType.class);
+
+    static {
+        for (CommandType type : CommandType.values()) {
+            TAGS.put(type, type.getName().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+    /**
+     * @return the bytes of the record being written, from 0 to {@link #size()}
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the size of the record being written
+     */
+    int size() {
+        return buffer.position();
+    }
+
+    void start(final long lsn, final byte kind) {
+        buffer.clear();
+        buffer.putLong(lsn);
+        buffer.put(kind);
+    }
+
+    void user(final String firstName, final String lastName, final String email) {
+        putString(firstName);
+        putString(lastName);
+        putString(email);
+    }
+
+    void exchangeRate(final String from, final String to, final double rate,
+                      final int timestamp) {
+        putString(from);
+        putString(to);
+        putDouble(rate);
+        putInt(timestamp);
+    }
+
+    void command(final Command command) {
+        byte[] tag = TAGS.get(command.type());
+        putInt(tag.length);
+        ensure(tag.length);
+        buffer.put(tag);
+
+        switch (command) {
+            case Command.AddAccount add -> {
+                putString(add.email());
+                putString(add.currency());
+                putString(add.accountType());
+                putDouble(add.interestRate());
+                putInt(add.timestamp());
+            }
+            case Command.PrintUsers print -> putInt(print.timestamp());
+            case Command.PrintTransactions print -> {
+                putString(print.email());
+                putInt(print.timestamp());
+            }
+            case Command.CreateCard create -> {
+                putString(create.email());
+                putString(create.account());
+                putInt(create.timestamp());
+            }
+            case Command.PayOnline pay -> {
+                putString(pay.email());
+                putString(pay.cardNumber());
+                putDouble(pay.amount());
+                putString(pay.currency());
+                putString(pay.commerciant());
+                putInt(pay.timestamp());
+            }
+            case Command.AddFunds add -> {
+                putString(add.account());
+                putDouble(add.amount());
+                putInt(add.timestamp());
+            }
+            case Command.Report report -> {
+                putString(report.account());
+                putInt(report.startTimestamp());
+                putInt(report.endTimestamp());
+                putInt(report.timestamp());
+            }
+            case Command.SendMoney send -> {
+                putString(send.email());
+                putString(send.account());
+                putString(send.receiver());
+                putDouble(send.amount());
+                putString(send.description());
+                putInt(send.timestamp());
+            }
+            case Command.CreateOneTimeCard create -> {
+                putString(create.email());
+                putString(create.account());
+                putInt(create.timestamp());
+            }
+            case Command.SpendingsReport report -> {
+                putString(report.account());
+                putInt(report.startTimestamp());
+                putInt(report.endTimestamp());
+                putInt(report.timestamp());
+            }
+            case Command.DeleteCard delete -> {
+                putString(delete.email());
+                putString(delete.cardNumber());
+                putInt(delete.timestamp());
+            }
+            case Command.DeleteAccount delete -> {
+                putString(delete.email());
+                putString(delete.account());
+                putInt(delete.timestamp());
+            }
+            case Command.SetAlias alias -> {
+                putString(alias.email());
+                putString(alias.alias());
+                putString(alias.account());
+                putInt(alias.timestamp());
+            }
+            case Command.SetMinBalance set -> {
+                putString(set.email());
+                putString(set.account());
+                putDouble(set.minBalance());
+                putInt(set.timestamp());
+            }
+            case Command.CheckCardStatus check -> {
+                putString(check.cardNumber());
+                putInt(check.timestamp());
+            }
+            case Command.AddInterest add -> {
+                putString(add.account());
+                putInt(add.timestamp());
+            }
+            case Command.AccrueInterest accrue -> {
+                putString(accrue.currency());
+                putInt(accrue.timestamp());
+            }
+            case Command.ChangeInterestRate change -> {
+                putString(change.account());
+                putDouble(change.interestRate());
+                putInt(change.timestamp());
+            }
+            case Command.SplitPayment split -> {
+                putStringList(split.accounts());
+                putDouble(split.amount());
+                putString(split.currency());
+                putString(split.splitPaymentType());
+                putDoubleList(split.amountForUsers());
+                putInt(split.timestamp());
+            }
+            case Command.AcceptSplitPayment accept -> {
+                putString(accept.email());
+                putString(accept.splitPaymentType());
+                putInt(accept.timestamp());
+            }
+            case Command.RejectSplitPayment reject -> {
+                putString(reject.email());
+                putString(reject.splitPaymentType());
+                putInt(reject.timestamp());
+            }
+        }
+    }
+
+    /**
+     * Hands a record payload to the visitor.
+     * @param kind the kind byte of the record
+     * @param payload positioned after the kind byte
+     * @param visitor
+     */
+    static void decode(final byte kind, final ByteBuffer payload, final JournalVisitor visitor) {
+        switch (kind) {
+            case USER -> visitor.user(getString(payload), getString(payload),
+                    getString(payload));
+            case EXCHANGE_RATE -> visitor.exchangeRate(getString(payload), getString(payload),
+                    payload.getDouble(), payload.getInt());
+            case COMMAND -> visitor.command(decodeCommand(payload));
+            default -> throw new IllegalArgumentException("Unknown journal record kind " + kind);
+        }
+    }
+
+    private static Command decodeCommand(final ByteBuffer in) {
+        String tag = getString(in);
+        CommandType type = CommandType.fromName(tag);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown journaled command " + tag);
+        }
+
+        return switch (type) {
+            case ADD_ACCOUNT -> new Command.AddAccount(getString(in), getString(in),
+                    getString(in), in.getDouble(), in.getInt());
+            case PRINT_USERS -> new Command.PrintUsers(in.getInt());
+            case PRINT_TRANSACTIONS -> new Command.PrintTransactions(getString(in), in.getInt());
+            case CREATE_CARD -> new Command.CreateCard(getString(in), getString(in),
+                    in.getInt());
+            case PAY_ONLINE -> new Command.PayOnline(getString(in), getString(in),
+                    in.getDouble(), getString(in), getString(in), in.getInt());
+            case ADD_FUNDS -> new Command.AddFunds(getString(in), in.getDouble(), in.getInt());
+            case REPORT -> new Command.Report(getString(in), in.getInt(), in.getInt(),
+                    in.getInt());
+            case SEND_MONEY -> new Command.SendMoney(getString(in), getString(in),
+                    getString(in), in.getDouble(), getString(in), in.getInt());
+            case CREATE_ONE_TIME_CARD -> new Command.CreateOneTimeCard(getString(in),
+                    getString(in), in.getInt());
+            case SPENDINGS_REPORT -> new Command.SpendingsReport(getString(in), in.getInt(),
+                    in.getInt(), in.getInt());
+            case DELETE_CARD -> new Command.DeleteCard(getString(in), getString(in),
+                    in.getInt());
+            case DELETE_ACCOUNT -> new Command.DeleteAccount(getString(in), getString(in),
+                    in.getInt());
+            case SET_ALIAS -> new Command.SetAlias(getString(in), getString(in), getString(in),
+                    in.getInt());
+            case SET_MIN_BALANCE -> new Command.SetMinBalance(getString(in), getString(in),
+                    in.getDouble(), in.getInt());
+            case CHECK_CARD_STATUS -> new Command.CheckCardStatus(getString(in), in.getInt());
+            case ADD_INTEREST -> new Command.AddInterest(getString(in), in.getInt());
+            case ACCRUE_INTEREST -> new Command.AccrueInterest(getString(in), in.getInt());
+            case CHANGE_INTEREST_RATE -> new Command.ChangeInterestRate(getString(in),
+                    in.getDouble(), in.getInt());
+            case SPLIT_PAYMENT -> new Command.SplitPayment(getStringList(in), in.getDouble(),
+                    getString(in), getString(in), getDoubleList(in), in.getInt());
+            case ACCEPT_SPLIT_PAYMENT -> new Command.AcceptSplitPayment(getString(in),
+                    getString(in), in.getInt());
+            case REJECT_SPLIT_PAYMENT -> new Command.RejectSplitPayment(getString(in),
+                    getString(in), in.getInt());
+        };
+    }
+
+    private void ensure(final int extra) {
+        if (buffer.remaining() >= extra) {
+            return;
+        }
+        int position = buffer.position();
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + extra));
+        buffer = ByteBuffer.wrap(bytes);
+        buffer.position(position);
+    }
+
+    private void putInt(final int value) {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    private void putDouble(final double value) {
+        ensure(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    private void putString(final String value) {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        putInt(utf8.length);
+        ensure(utf8.length);
+        buffer.put(utf8);
+    }
+
+    private void putStringList(final List<String> values) {
+        if (values == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(values.size());
+        for (String value : values) {
+            putString(value);
+        }
+    }
+
+    private void putDoubleList(final List<Double> values) {
+        if (values == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(values.size());
+        for (double value : values) {
+            putDouble(value);
+        }
+    }
+
+    private static String getString(final ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(payload.array(), payload.arrayOffset() + payload.position(),
+                length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+
+    private static List<String> getStringList(final ByteBuffer payload) {
+        int size = payload.getInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(getString(payload));
+        }
+        return values;
+    }
+
+    private static List<Double> getDoubleList(final ByteBuffer payload) {
+        int size = payload.getInt();
+        if (size < 0) {
+            return null;
+        }
+        List<Double> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(payload.getDouble());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,128 @@
+package org.poo.journal;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.poo.commands.Command;
+import org.poo.commands.CommandRegistry;
+import org.poo.output.OutputSink;
+import org.poo.snapshot.Snapshot;
+import org.poo.users.Database;
+import org.poo.users.User;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rebuilds a database by replaying a journal through the command handlers.
+ * The outputs the commands produced the first time are not reproduced.
+ * <p>
+ * Commands are journaled before they run, so a command that failed when
+ * it first ran fails again here. Its partial effects are kept and the
+ * replay goes on, as the server did after answering with the failure, and
+ * the failure is handed back to the caller with the database.
+ */
+public final class Recovery implements JournalVisitor {
+    private static final OutputSink DISCARD = new OutputSink() {
+        @Override
+        public void add(final ObjectNode entry) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final Database database;
+    private final CommandRegistry registry;
+    private final List<Failure> failures = new ArrayList<>();
+
+    private Recovery(final Database database, final CommandRegistry registry) {
+        this.database = database;
+        this.registry = registry;
+    }
+
+    /**
+     * @param journal
+     * @param registry the handlers the commands were run with
+     * @return the state of the bank after the last valid record
+     * @throws IOException if the journal cannot be read
+     */
+    public static Recovered recover(final Path journal, final CommandRegistry registry)
+            throws IOException {
+        Database database = new Database();
+        return new Recovered(database, replay(journal, 0, database, registry));
+    }
+
+    /**
+     * @param snapshot a snapshot taken while the journal was written
+     * @param journal
+     * @param registry the handlers the commands were run with
+     * @return the state of the snapshot, with the journal records that
+     *         came after it applied
+     * @throws IOException if the snapshot or the journal cannot be read
+     */
+    public static Recovered recover(final Path snapshot, final Path journal,
+                                    final CommandRegistry registry) throws IOException {
+        Snapshot loaded = Snapshot.read(snapshot);
+        return new Recovered(loaded.database(),
+                replay(journal, loaded.journalLsn(), loaded.database(), registry));
+    }
+
+    /**
+     * Applies the records of a journal that come after a sequence number
+     * to an existing database.
+     * @param journal
+     * @param afterLsn sequence number of the last record already applied
+     * @param database
+     * @param registry the handlers the commands were run with
+     * @return the commands that failed again, in journal order
+     * @throws IOException if the journal cannot be read
+     */
+    public static List<Failure> replay(
+            final Path journal,
+            final long afterLsn,
+            final Database database,
+            final CommandRegistry registry) throws IOException {
+        Recovery recovery = new Recovery(database, registry);
+        JournalReader.read(journal, afterLsn, recovery);
+        return recovery.failures;
+    }
+
+    @Override
+    public void user(final String firstName, final String lastName, final String email) {
+        database.addUser(new User(database, firstName, lastName, email));
+    }
+
+    @Override
+    public void exchangeRate(final String from, final String to, final double rate,
+                             final int timestamp) {
+        database.addExchangeRate(from, to, rate, timestamp);
+    }
+
+    @Override
+    public void command(final Command command) {
+        try {
+            registry.dispatch(database, command, DISCARD);
+        } catch (RuntimeException e) {
+            failures.add(new Failure(command, e));
+        }
+    }
+
+    /**
+     * A recovered database.
+     * @param database
+     * @param failures the journaled commands that failed again when
+     *                 replayed, in journal order
+     */
+    public record Recovered(Database database, List<Failure> failures) {
+    }
+
+    /**
+     * A journaled command that threw when it was replayed.
+     * @param command
+     * @param error
+     */
+    public record Failure(Command command, RuntimeException error) {
+    }
+}
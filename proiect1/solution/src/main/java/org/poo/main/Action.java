@@ -1,19 +1,19 @@
 package org.poo.main;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.poo.money.Money;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import org.poo.accounts.Account;
 import org.poo.accounts.SavingsAccount;
 import org.poo.cards.Card;
-import org.poo.fileio.CommandInput;
+import org.poo.commands.Command;
+import org.poo.output.OutputSink;
 import org.poo.transactions.ErrorTransaction;
 import org.poo.transactions.SplitPayment;
 import org.poo.transactions.Transaction;
 import org.poo.users.Database;
 import org.poo.users.User;
 
-import java.util.Comparator;
-import java.util.List;
 
 import static org.poo.main.Main.generateOutputEntry;
 
@@ -26,86 +26,86 @@ public final class Action {
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
      * @param user
      * @param output
      */
     public static void addAccount(
-            final CommandInput commandInput,
+            final Command.AddAccount command,
+            final Database database,
             final User user,
-            final ArrayNode output
+            final OutputSink output
     ) {
         if (user != null) {
-            if (commandInput.getAccountType().equals("savings")) {
+            if (command.accountType().equals("savings")) {
                 user.createSavingsAccount(
-                        commandInput.getCurrency(),
-                        commandInput.getInterestRate()
+                        command.currency(),
+                        command.interestRate()
                 );
                 return;
             }
-            user.createAccount(commandInput.getCurrency());
+            user.createAccount(command.currency());
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "User not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
-     * @param users
+     * @param command
+     * @param database
+     * @param user
      * @param output
      */
     public static void printUsers(
-            final CommandInput commandInput,
-            final List<User> users,
-            final ArrayNode output
+            final Command.PrintUsers command,
+            final Database database,
+            final User user,
+            final OutputSink output
     ) {
         ArrayNode arrayNode;
-        arrayNode = new ObjectMapper().createArrayNode();
-        for (User u : users) {
+        arrayNode = JsonNodeFactory.instance.arrayNode();
+        for (User u : database.getUsers()) {
             arrayNode.add(u.toJSON());
         }
         output.add(generateOutputEntry(
-                commandInput.getCommand(),
+                command.type().getName(),
                 arrayNode,
-                commandInput.getTimestamp())
+                command.timestamp())
         );
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
      * @param user
      * @param output
      */
     public static void printTransactions(
-            final CommandInput commandInput,
+            final Command.PrintTransactions command,
+            final Database database,
             final User user,
-            final ArrayNode output
+            final OutputSink output
     ) {
         ArrayNode arrayNode;
-        arrayNode = new ObjectMapper().createArrayNode();
+        arrayNode = JsonNodeFactory.instance.arrayNode();
         if (user != null) {
-            List<Transaction> orderedTransactions = user.getAccounts().stream()
-                    .map(Account::getTransactions)
-                    .flatMap(List::stream)
-                    .sorted(Comparator.comparing(Transaction::getTimestamp))
-                    .toList();
-
-            for (Transaction transaction : orderedTransactions) {
+            for (Transaction transaction : user.getTimeline()) {
                 arrayNode.add(transaction.toJson());
             }
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     arrayNode,
-                    commandInput.getTimestamp())
+                    command.timestamp())
             );
         }
     }
@@ -113,15 +113,19 @@ public final class Action {
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
      * @param user
+     * @param output
      */
     public static void createCard(
-            final CommandInput commandInput,
-            final User user
+            final Command.CreateCard command,
+            final Database database,
+            final User user,
+            final OutputSink output
     ) {
         Account account;
-        account = Database.getInstance().getAccountByIBAN(commandInput.getAccount());
+        account = database.getAccountByIBAN(command.account());
         if (account != null && user != null && account.getOwner() == user) {
             account.createCard();
         }
@@ -130,417 +134,560 @@ public final class Action {
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
      * @param user
      * @param output
      */
     public static void payOnline(
-            final CommandInput commandInput,
+            final Command.PayOnline command,
+            final Database database,
             final User user,
-            final ArrayNode output
+            final OutputSink output
     ) {
         if (user != null) {
-            Card card = user.getCardByNumber(commandInput.getCardNumber());
+            Card card = user.getCardByNumber(command.cardNumber());
             if (card != null) {
                 card.makePayment(
-                        commandInput.getAmount(),
-                        commandInput.getCurrency(),
-                        commandInput.getCommerciant()
+                        Money.of(command.amount()),
+                        command.currency(),
+                        command.commerciant()
                 );
             } else {
                 output.add(generateOutputEntry(
-                        commandInput.getCommand(),
+                        command.type().getName(),
                         new ErrorTransaction(
                                 "Card not found",
-                                commandInput.getTimestamp()).toJson(),
-                        commandInput.getTimestamp()));
+                                command.timestamp()).toJson(),
+                        command.timestamp()));
             }
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "User not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
+     * @param user
      * @param output
      */
     public static void addFunds(
-            final CommandInput commandInput,
-            final ArrayNode output
+            final Command.AddFunds command,
+            final Database database,
+            final User user,
+            final OutputSink output
     ) {
         Account account;
-        account = Database.getInstance().getAccountByIBAN(commandInput.getAccount());
+        account = database.getAccountByIBAN(command.account());
         if (account != null) {
-            account.deposit(commandInput.getAmount());
+            account.deposit(Money.of(command.amount()));
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "Account not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
+     * @param user
      * @param output
      */
     public static void report(
-            final CommandInput commandInput,
-            final ArrayNode output
+            final Command.Report command,
+            final Database database,
+            final User user,
+            final OutputSink output
     ) {
         Account account;
-        account = Database.getInstance().getAccountByIBAN(commandInput.getAccount());
+        account = database.getAccountByIBAN(command.account());
         if (account != null) {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     account.getReport(
-                            commandInput.getStartTimestamp(),
-                            commandInput.getEndTimestamp()),
-                    commandInput.getTimestamp()));
+                            command.startTimestamp(),
+                            command.endTimestamp()),
+                    command.timestamp()));
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "Account not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
      * @param user
      * @param output
      */
     public static void sendMoney(
-            final CommandInput commandInput,
+            final Command.SendMoney command,
+            final Database database,
             final User user,
-            final ArrayNode output
+            final OutputSink output
     ) {
         Account account2;
         Account account1;
         if (user != null) {
-            account1 = Database.getInstance()
-                    .getAccountByIBAN(commandInput.getAccount());
-            String receiver = commandInput.getReceiver();
+            account1 = database
+                    .getAccountByIBAN(command.account());
+            String receiver = command.receiver();
             if (user.getAliases().get(receiver) != null) {
                 receiver = user.getAliases().get(receiver);
             }
-            account2 = Database.getInstance().getAccountByIBAN(receiver);
+            account2 = database.getAccountByIBAN(receiver);
             if (account1 != null && account2 != null && account1.getOwner() == user) {
                 account1.sendMoney(
-                        commandInput.getAmount(),
+                        Money.of(command.amount()),
                         account2,
-                        commandInput.getDescription()
+                        command.description()
                 );
             }
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "User not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
      * @param user
      * @param output
      */
     public static void createOneTimeCard(
-            final CommandInput commandInput,
+            final Command.CreateOneTimeCard command,
+            final Database database,
             final User user,
-            final ArrayNode output
+            final OutputSink output
     ) {
         Account account;
-        account = Database.getInstance().getAccountByIBAN(commandInput.getAccount());
+        account = database.getAccountByIBAN(command.account());
         if (account != null && user != null && account.getOwner() == user) {
             account.createOneTimeCard();
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "User not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
+     * @param user
      * @param output
      */
     public static void spendingsReport(
-            final CommandInput commandInput,
-            final ArrayNode output
+            final Command.SpendingsReport command,
+            final Database database,
+            final User user,
+            final OutputSink output
     ) {
         Account account;
-        account = Database.getInstance()
-                .getAccountByIBAN(commandInput.getAccount());
+        account = database
+                .getAccountByIBAN(command.account());
         if (account != null) {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     account.getSpendingReport(
-                            commandInput.getStartTimestamp(),
-                            commandInput.getEndTimestamp()),
-                    commandInput.getTimestamp()));
+                            command.startTimestamp(),
+                            command.endTimestamp()),
+                    command.timestamp()));
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "Account not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
      * @param user
      * @param output
      */
     public static void deleteCard(
-            final CommandInput commandInput,
+            final Command.DeleteCard command,
+            final Database database,
             final User user,
-            final ArrayNode output
+            final OutputSink output
     ) {
         if (user != null) {
-            Card card = user.getCardByNumber(commandInput.getCardNumber());
+            Card card = user.getCardByNumber(command.cardNumber());
             if (card != null) {
                 card.destroy();
             }
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "User not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
      * @param user
      * @param output
      */
     public static void deleteAccount(
-            final CommandInput commandInput,
+            final Command.DeleteAccount command,
+            final Database database,
             final User user,
-            final ArrayNode output
+            final OutputSink output
     ) {
         Account account;
         if (user != null) {
-            account = Database.getInstance()
-                    .getAccountByIBAN(commandInput.getAccount());
+            account = database
+                    .getAccountByIBAN(command.account());
             if (account != null && account.getOwner() == user) {
                 output.add(generateOutputEntry(
-                        commandInput.getCommand(),
+                        command.type().getName(),
                         account.destroyAccount(),
-                        commandInput.getTimestamp()
+                        command.timestamp()
                 ));
             }
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "User not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
      * @param user
      * @param output
      */
     public static void setAlias(
-            final CommandInput commandInput,
+            final Command.SetAlias command,
+            final Database database,
             final User user,
-            final ArrayNode output
+            final OutputSink output
     ) {
         if (user != null) {
-            user.getAliases().put(commandInput.getAlias(), commandInput.getAccount());
+            user.getAliases().put(command.alias(), command.account());
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "User not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
      * @param user
      * @param output
      */
     public static void setMinBalance(
-            final CommandInput commandInput,
+            final Command.SetMinBalance command,
+            final Database database,
             final User user,
-            final ArrayNode output
+            final OutputSink output
     ) {
         Account account;
         if (user != null) {
-            account = Database.getInstance()
-                    .getAccountByIBAN(commandInput.getAccount());
+            account = database
+                    .getAccountByIBAN(command.account());
             if (account != null && account.getOwner() == user) {
                 account.minBalanceTransaction(
-                        commandInput.getMinBalance(), account);
+                        Money.of(command.minBalance()), account);
             }
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "User not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
+     * @param user
      * @param output
      */
     public static void checkCardStatus(
-            final CommandInput commandInput,
-            final ArrayNode output
+            final Command.CheckCardStatus command,
+            final Database database,
+            final User user,
+            final OutputSink output
     ) {
-        Card card = Database.getInstance()
-                .getCardByNumber(commandInput.getCardNumber());
+        Card card = database
+                .getCardByNumber(command.cardNumber());
         if (card != null) {
             card.checkCardStatus();
         } else {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "Card not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
         }
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
+     * @param user
      * @param output
      */
     public static void addInterest(
-            final CommandInput commandInput,
-            final ArrayNode output
+            final Command.AddInterest command,
+            final Database database,
+            final User user,
+            final OutputSink output
     ) {
         Account account;
-        account = Database.getInstance().getAccountByIBAN(commandInput.getAccount());
+        account = database.getAccountByIBAN(command.account());
         if (account == null) {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "Account not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
             return;
         }
 
         if (!account.getType().equals("savings")) {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "This is not a savings account",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
             return;
         }
 
-        ((SavingsAccount) account).addInterest(commandInput.getTimestamp());
+        ((SavingsAccount) account).addInterest(command.timestamp());
+    }
+
+    /**
+     * Adds interest to every savings account of the command's currency, or
+     * to all of them if it names none, in one pass over the savings book.
+     *
+     * @param command
+     * @param database
+     * @param user
+     * @param output
+     */
+    public static void accrueInterest(
+            final Command.AccrueInterest command,
+            final Database database,
+            final User user,
+            final OutputSink output
+    ) {
+        database.getSavings().accrue(command.currency(), command.timestamp());
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
+     * @param user
      * @param output
      */
     public static void changeInterestRate(
-            final CommandInput commandInput,
-            final ArrayNode output
+            final Command.ChangeInterestRate command,
+            final Database database,
+            final User user,
+            final OutputSink output
     ) {
         Account account;
-        account = Database.getInstance().getAccountByIBAN(commandInput.getAccount());
+        account = database.getAccountByIBAN(command.account());
         if (account == null) {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "Account not found",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
             return;
         }
 
         if (!account.getType().equals("savings")) {
             output.add(generateOutputEntry(
-                    commandInput.getCommand(),
+                    command.type().getName(),
                     new ErrorTransaction(
                             "This is not a savings account",
-                            commandInput.getTimestamp()).toJson(),
-                    commandInput.getTimestamp()));
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
             return;
         }
 
         ((SavingsAccount) account).changeInterestRate(
-                commandInput.getTimestamp(),
-                commandInput.getInterestRate()
+                command.timestamp(),
+                command.interestRate()
         );
     }
 
     /**
      * To bypass checkstyle
      *
-     * @param commandInput
+     * @param command
+     * @param database
+     * @param user
+     * @param output
      */
-    public static void splitPayment(final CommandInput commandInput) {
-        var accounts = commandInput.getAccounts().stream()
-                .map(Database.getInstance()::getAccountByIBAN)
+    public static void splitPayment(
+            final Command.SplitPayment command,
+            final Database database,
+            final User user,
+            final OutputSink output
+    ) {
+        var accounts = command.accounts().stream()
+                .map(database::getAccountByIBAN)
                 .toList();
 
-        var splitPayment = new SplitPayment(
+        if (command.splitPaymentType() == null) {
+            new SplitPayment(
+                    accounts,
+                    command.timestamp(),
+                    Money.of(command.amount()),
+                    command.currency()
+            ).makePayment();
+            return;
+        }
+
+        if (accounts.contains(null)) {
+            return;
+        }
+        long[] shares = null;
+        if ("custom".equals(command.splitPaymentType())) {
+            if (command.amountForUsers() == null
+                    || command.amountForUsers().size() != accounts.size()) {
+                return;
+            }
+            shares = command.amountForUsers().stream().mapToLong(Money::of).toArray();
+        }
+        new SplitPayment(
                 accounts,
-                commandInput.getTimestamp(),
-                commandInput.getAmount(),
-                commandInput.getCurrency()
-        );
+                command.timestamp(),
+                Money.of(command.amount()),
+                command.currency(),
+                command.splitPaymentType(),
+                shares
+        ).propose();
+    }
+
+    /**
+     * To bypass checkstyle
+     *
+     * @param command
+     * @param database
+     * @param user
+     * @param output
+     */
+    public static void acceptSplitPayment(
+            final Command.AcceptSplitPayment command,
+            final Database database,
+            final User user,
+            final OutputSink output
+    ) {
+        if (user != null) {
+            SplitPayment split = user.pollPendingSplit(command.splitPaymentType());
+            if (split != null) {
+                split.accept();
+            }
+        } else {
+            output.add(generateOutputEntry(
+                    command.type().getName(),
+                    new ErrorTransaction(
+                            "User not found",
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
+        }
+    }
 
-        splitPayment.makePayment();
+    /**
+     * To bypass checkstyle
+     *
+     * @param command
+     * @param database
+     * @param user
+     * @param output
+     */
+    public static void rejectSplitPayment(
+            final Command.RejectSplitPayment command,
+            final Database database,
+            final User user,
+            final OutputSink output
+    ) {
+        if (user != null) {
+            SplitPayment split = user.pollPendingSplit(command.splitPaymentType());
+            if (split != null) {
+                split.reject();
+            }
+        } else {
+            output.add(generateOutputEntry(
+                    command.type().getName(),
+                    new ErrorTransaction(
+                            "User not found",
+                            command.timestamp()).toJson(),
+                    command.timestamp()));
+        }
     }
 }
@@ -1,18 +1,27 @@
 package org.poo.main;
 
-import org.poo.accounts.Account;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ContainerNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.poo.accounts.Account;
 import org.poo.checker.Checker;
 import org.poo.checker.CheckerConstants;
-import org.poo.fileio.CommerciantInput;
+import org.poo.commands.Command;
+import org.poo.commands.CommandQueue;
+import org.poo.commands.CommandRegistry;
+import org.poo.commands.CommandScheduler;
+import org.poo.commands.CommandType;
+import org.poo.commands.FundingBatch;
 import org.poo.fileio.CommandInput;
 import org.poo.fileio.ExchangeInput;
 import org.poo.fileio.UserInput;
 import org.poo.fileio.ObjectInput;
+import org.poo.fileio.StreamingInputReader;
+import org.poo.journal.Journal;
+import org.poo.journal.Recovery;
+import org.poo.metrics.CommandMetrics;
+import org.poo.output.JsonOutputSink;
+import org.poo.output.OutputSink;
 import org.poo.users.Database;
 import org.poo.users.User;
 
@@ -21,29 +30,16 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-
-import static org.poo.main.Action.addAccount;
-import static org.poo.main.Action.printUsers;
-import static org.poo.main.Action.printTransactions;
-import static org.poo.main.Action.createCard;
-import static org.poo.main.Action.payOnline;
-import static org.poo.main.Action.addFunds;
-import static org.poo.main.Action.report;
-import static org.poo.main.Action.sendMoney;
-import static org.poo.main.Action.createOneTimeCard;
-import static org.poo.main.Action.spendingsReport;
-import static org.poo.main.Action.deleteCard;
-import static org.poo.main.Action.deleteAccount;
-import static org.poo.main.Action.setAlias;
-import static org.poo.main.Action.setMinBalance;
-import static org.poo.main.Action.checkCardStatus;
-import static org.poo.main.Action.addInterest;
-import static org.poo.main.Action.changeInterestRate;
-import static org.poo.main.Action.splitPayment;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The entry point to this homework. It runs the checker that tests your implementation.
@@ -57,6 +53,88 @@ public final class Main {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    private static final CommandRegistry REGISTRY = createRegistry();
+
+    /**
+     * Reads the commands one by one while they run, instead of binding the
+     * whole input first. Enabled with -Dorg.poo.input.streaming=true.
+     */
+    private static final boolean STREAMING_INPUT = Boolean.getBoolean("org.poo.input.streaming");
+
+    /**
+     * Writes the output without indentation. Enabled with
+     * -Dorg.poo.output.compact=true.
+     */
+    private static final boolean COMPACT_OUTPUT = Boolean.getBoolean("org.poo.output.compact");
+
+    /**
+     * Number of input files run at the same time by {@link #action}.
+     * Set with -Dorg.poo.files.parallelism=N, defaults to one.
+     */
+    private static final int FILE_PARALLELISM =
+            Math.max(1, Integer.getInteger("org.poo.files.parallelism", 1));
+
+    private static final ForkJoinPool FILE_POOL =
+            FILE_PARALLELISM > 1 ? new ForkJoinPool(FILE_PARALLELISM) : null;
+
+    /** Runs handed to {@link #FILE_POOL} and not waited for yet. */
+    private static final Queue<Future<?>> RUNS = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Directory that receives, for every input file, a JSON summary of the
+     * latency, count and allocation of each command type. Set with
+     * -Dorg.poo.metrics.dir=DIR; no metrics are collected when unset.
+     */
+    private static final String METRICS_DIR = System.getProperty("org.poo.metrics.dir");
+
+    /**
+     * Emits every command as a JFR event. Enabled with
+     * -Dorg.poo.metrics.jfr=true, and only recorded while JFR runs.
+     */
+    private static final boolean JFR_EVENTS = Boolean.getBoolean("org.poo.metrics.jfr");
+
+    private static final boolean METRICS = METRICS_DIR != null || JFR_EVENTS;
+
+    /**
+     * Number of threads the commands of one run are spread over by a
+     * {@link CommandScheduler}. Set with -Dorg.poo.commands.parallelism=N;
+     * commands run one by one on the calling thread when it is one, the
+     * default. Metrics are only collected for commands run one by one.
+     */
+    private static final int COMMAND_PARALLELISM =
+            Math.max(1, Integer.getInteger("org.poo.commands.parallelism", 1));
+
+    private static final ForkJoinPool COMMAND_POOL =
+            COMMAND_PARALLELISM > 1 ? new ForkJoinPool(COMMAND_PARALLELISM) : null;
+
+    /**
+     * Runs consecutive addFunds commands as one {@link FundingBatch}.
+     * Enabled with -Dorg.poo.commands.batchFunds=true; ignored when the
+     * commands run in parallel or metrics are collected, since both need
+     * the commands one by one.
+     */
+    private static final boolean BATCH_FUNDS = Boolean.getBoolean("org.poo.commands.batchFunds");
+
+    /**
+     * Directory that receives a write-ahead journal for every input file,
+     * named after it with a .journal suffix. Set with
+     * -Dorg.poo.journal.dir=DIR; runs are not journaled when unset.
+     */
+    private static final String JOURNAL_DIR = System.getProperty("org.poo.journal.dir");
+
+    /**
+     * Number of journal records forced to disk together. Set with
+     * -Dorg.poo.journal.group=N.
+     */
+    private static final int JOURNAL_GROUP = Integer.getInteger("org.poo.journal.group", 64);
+
+    /**
+     * Directory that receives a snapshot of the final state of every run,
+     * named after its input with a .snapshot suffix. Set with
+     * -Dorg.poo.snapshot.dir=DIR.
+     */
+    private static final String SNAPSHOT_DIR = System.getProperty("org.poo.snapshot.dir");
+
     /**
      * @param command
      * @param output
@@ -111,17 +189,50 @@ public final class Main {
     }
 
     /**
+     * Runs one input file. With -Dorg.poo.files.parallelism=N above one, the
+     * run goes to a pool of N threads and this returns right away; every run
+     * has its own database, so the outputs are those of a sequential run.
+     * {@link #awaitRuns} waits for them.
      * @param filePath1 for input file
      * @param filePath2 for output file
      * @throws IOException in case of exceptions to reading / writing
      */
     public static void action(final String filePath1,
                               final String filePath2) throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        File file = new File(CheckerConstants.TESTS_PATH + filePath1);
-        ObjectInput inputData = objectMapper.readValue(file, ObjectInput.class);
+        if (FILE_POOL == null) {
+            run(filePath1, filePath2);
+            return;
+        }
+        RUNS.add(FILE_POOL.submit(() -> {
+            run(filePath1, filePath2);
+            return null;
+        }));
+    }
+
+    /**
+     * Waits for the runs {@link #action} handed to the pool.
+     * @throws IOException the failure of the first run that failed
+     */
+    public static void awaitRuns() throws IOException {
+        for (Future<?> run = RUNS.poll(); run != null; run = RUNS.poll()) {
+            try {
+                run.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+    }
 
-        ArrayNode output = objectMapper.createArrayNode();
+    private static void run(final String filePath1,
+                            final String filePath2) throws IOException {
+        ObjectMapper objectMapper = MAPPER;
+        File file = new File(CheckerConstants.TESTS_PATH + filePath1);
 
         /*
          * How to add output to the output array?
@@ -139,94 +250,242 @@ public final class Main {
          * output.add(objectNode);
          *
          */
-        Database.getInstance().init();
+        Database database = new Database();
+        CommandMetrics metrics = METRICS ? new CommandMetrics(JFR_EVENTS) : null;
+
+        try (Journal journal = createJournal(filePath1);
+             OutputSink output = new JsonOutputSink(
+                objectMapper, new File(filePath2), !COMPACT_OUTPUT)) {
+            database.setJournal(journal);
+            // the queue runs what it still holds when it closes, before the snapshot
+            try (CommandQueue queue = createQueue(database, output)) {
+                if (STREAMING_INPUT) {
+                    new StreamingInputReader(objectMapper, file).read(
+                            inputData -> setup(database, inputData),
+                            commandInput -> execute(database, commandInput, output, metrics,
+                                    queue)
+                    );
+                } else {
+                    ObjectInput inputData = objectMapper.readValue(file, ObjectInput.class);
+                    setup(database, inputData);
+                    for (CommandInput commandInput : inputData.getCommands()) {
+                        execute(database, commandInput, output, metrics, queue);
+                    }
+                }
+            }
+            if (SNAPSHOT_DIR != null) {
+                Path directory = Files.createDirectories(Paths.get(SNAPSHOT_DIR));
+                database.writeSnapshot(directory.resolve(filePath1 + ".snapshot"));
+            }
+        }
+
+        if (METRICS_DIR != null) {
+            recordReportCache(database, metrics);
+            metrics.write(objectMapper, filePath1, new File(METRICS_DIR, filePath1));
+        }
+    }
 
-        UserInput[] userInputs = inputData.getUsers();
-        ExchangeInput[] exchangeInputs = inputData.getExchangeRates();
-        CommandInput[] commandInputs = inputData.getCommands();
-        CommerciantInput[] commerciantInputs = inputData.getCommerciants();
+    private static void recordReportCache(final Database database,
+                                          final CommandMetrics metrics) {
+        long hits = 0;
+        long misses = 0;
+        for (User user : database.getUsers()) {
+            List<Account> accounts = new ArrayList<>(user.getAccounts());
+            accounts.addAll(user.getDestroyedAccounts());
+            for (Account account : accounts) {
+                hits += account.getReportCache().getHits();
+                misses += account.getReportCache().getMisses();
+            }
+        }
+        metrics.setReportCache(hits, misses);
+    }
 
-        List<User> users = Database.getInstance().getUsers();
-        for (UserInput userInput : userInputs) {
-            users.add(new User(userInput));
+    private static CommandQueue createQueue(final Database database, final OutputSink output) {
+        if (COMMAND_POOL != null) {
+            return new CommandScheduler(REGISTRY, database, output, COMMAND_POOL);
         }
+        if (BATCH_FUNDS && !METRICS) {
+            return new FundingBatch(REGISTRY, database, output);
+        }
+        return null;
+    }
+
+    private static Journal createJournal(final String input) throws IOException {
+        if (JOURNAL_DIR == null) {
+            return null;
+        }
+        Path directory = Files.createDirectories(Paths.get(JOURNAL_DIR));
+        return Journal.create(directory.resolve(input + ".journal"), JOURNAL_GROUP);
+    }
+
+    /**
+     * Rebuilds the database of a run from its journal.
+     * @param journal
+     * @return the state of the bank after the last valid journal record,
+     *         and the commands that failed again when replayed
+     * @throws IOException if the journal cannot be read
+     */
+    public static Recovery.Recovered recover(final Path journal) throws IOException {
+        return Recovery.recover(journal, REGISTRY);
+    }
+
+    /**
+     * Rebuilds the database of a run from a snapshot and the part of its
+     * journal written after the snapshot.
+     * @param snapshot
+     * @param journal
+     * @return the state of the bank after the last valid journal record,
+     *         and the commands that failed again when replayed
+     * @throws IOException if the snapshot or the journal cannot be read
+     */
+    public static Recovery.Recovered recover(final Path snapshot, final Path journal)
+            throws IOException {
+        return Recovery.recover(snapshot, journal, REGISTRY);
+    }
 
-        for (ExchangeInput exchangeInput : exchangeInputs) {
-            Database.getInstance().addExchangeRate(
-                    exchangeInput.getFrom(),
-                    exchangeInput.getTo(),
-                    exchangeInput.getRate()
-            );
+    /**
+     * Loads the users and the exchange rates of an input.
+     * @param database
+     * @param inputData the input, whose commands are ignored
+     */
+    public static void setup(final Database database, final ObjectInput inputData) {
+        if (inputData.getUsers() != null) {
+            for (UserInput userInput : inputData.getUsers()) {
+                if (database.getJournal() != null) {
+                    database.getJournal().appendUser(userInput.getFirstName(),
+                            userInput.getLastName(), userInput.getEmail());
+                }
+                database.addUser(new User(database, userInput));
+            }
         }
 
-        ArrayNode arrayNode = null;
-        Account account, account1, account2;
-
-        for (CommandInput commandInput: commandInputs) {
-            Database.getInstance().setTimestamp(commandInput.getTimestamp());
-            User user = Database.getInstance().getUserByEmail(commandInput.getEmail());
-            switch (commandInput.getCommand()) {
-                case "addAccount":
-                    addAccount(commandInput, user, output);
-                    break;
-                case "printUsers":
-                    printUsers(commandInput, users, output);
-                    break;
-                case "printTransactions":
-                    printTransactions(commandInput, user, output);
-                    break;
-                case "createCard":
-                    createCard(commandInput, user);
-                    break;
-                case "payOnline":
-                    payOnline(commandInput, user, output);
-                    break;
-                case "addFunds":
-                    addFunds(commandInput, output);
-                    break;
-                case "report":
-                    report(commandInput, output);
-                    break;
-                case "sendMoney":
-                    sendMoney(commandInput, user, output);
-                    break;
-                case "createOneTimeCard":
-                    createOneTimeCard(commandInput, user, output);
-                    break;
-                case "spendingsReport":
-                    spendingsReport(commandInput, output);
-                    break;
-                case "deleteCard":
-                    deleteCard(commandInput, user, output);
-                    break;
-                case "deleteAccount":
-                    deleteAccount(commandInput, user, output);
-                    break;
-                case "setAlias":
-                    setAlias(commandInput, user, output);
-                    break;
-                case "setMinBalance":
-                    setMinBalance(commandInput, user, output);
-                    break;
-                case "checkCardStatus":
-                    checkCardStatus(commandInput, output);
-                    break;
-                case "addInterest":
-                    addInterest(commandInput, output);
-                    break;
-                case "changeInterestRate":
-                    changeInterestRate(commandInput, output);
-                    break;
-                case "splitPayment":
-                    splitPayment(commandInput);
-                    break;
-                default:
-                    break;
+        if (inputData.getExchangeRates() != null) {
+            for (ExchangeInput exchangeInput : inputData.getExchangeRates()) {
+                if (database.getJournal() != null) {
+                    database.getJournal().appendExchangeRate(exchangeInput.getFrom(),
+                            exchangeInput.getTo(), exchangeInput.getRate(),
+                            exchangeInput.getTimestamp());
+                }
+                database.addExchangeRate(
+                        exchangeInput.getFrom(),
+                        exchangeInput.getTo(),
+                        exchangeInput.getRate(),
+                        exchangeInput.getTimestamp()
+                );
             }
         }
+    }
+
+    /**
+     * Parses one command and runs it against the database.
+     * Commands with an unknown name are ignored.
+     * @param database
+     * @param commandInput
+     * @param output
+     */
+    public static void execute(
+            final Database database,
+            final CommandInput commandInput,
+            final OutputSink output) {
+        execute(database, commandInput, output, null);
+    }
+
+    /**
+     * Parses one command and runs it against the database, recording it in
+     * the metrics of the run if there are any.
+     * @param database
+     * @param commandInput
+     * @param output
+     * @param metrics the metrics of the run, or null
+     */
+    public static void execute(
+            final Database database,
+            final CommandInput commandInput,
+            final OutputSink output,
+            final CommandMetrics metrics) {
+        execute(database, commandInput, output, metrics, null);
+    }
+
+    /**
+     * Parses one command and runs it against the database, or hands it to
+     * the queue of the run if there is one.
+     * @param database
+     * @param commandInput
+     * @param output
+     * @param metrics the metrics of the run, or null
+     * @param queue the scheduler or the batch of the run, or null to run the
+     *              command on the calling thread
+     */
+    public static void execute(
+            final Database database,
+            final CommandInput commandInput,
+            final OutputSink output,
+            final CommandMetrics metrics,
+            final CommandQueue queue) {
+        Command command = CommandType.parse(commandInput);
+        if (command != null) {
+            execute(database, command, output, metrics, queue);
+        }
+    }
+
+    /**
+     * Runs one parsed command against the database, journaling it first if
+     * it changes state.
+     * @param database
+     * @param command
+     * @param output
+     */
+    public static void execute(
+            final Database database,
+            final Command command,
+            final OutputSink output) {
+        execute(database, command, output, null, null);
+    }
+
+    private static void execute(
+            final Database database,
+            final Command command,
+            final OutputSink output,
+            final CommandMetrics metrics,
+            final CommandQueue queue) {
+        if (database.getJournal() != null && command.type().changesState()) {
+            database.getJournal().appendCommand(command);
+        }
+
+        if (queue != null) {
+            queue.submit(command);
+        } else if (METRICS && metrics != null) {
+            metrics.begin();
+            REGISTRY.dispatch(database, command, output);
+            metrics.end(command.type(), command.timestamp());
+        } else {
+            REGISTRY.dispatch(database, command, output);
+        }
+    }
 
-        ObjectWriter objectWriter = objectMapper.writerWithDefaultPrettyPrinter();
-        objectWriter.writeValue(new File(filePath2), output);
+    private static CommandRegistry createRegistry() {
+        return new CommandRegistry()
+                .register(CommandType.ADD_ACCOUNT, Action::addAccount)
+                .register(CommandType.PRINT_USERS, Action::printUsers)
+                .register(CommandType.PRINT_TRANSACTIONS, Action::printTransactions)
+                .register(CommandType.CREATE_CARD, Action::createCard)
+                .register(CommandType.PAY_ONLINE, Action::payOnline)
+                .register(CommandType.ADD_FUNDS, Action::addFunds)
+                .register(CommandType.REPORT, Action::report)
+                .register(CommandType.SEND_MONEY, Action::sendMoney)
+                .register(CommandType.CREATE_ONE_TIME_CARD, Action::createOneTimeCard)
+                .register(CommandType.SPENDINGS_REPORT, Action::spendingsReport)
+                .register(CommandType.DELETE_CARD, Action::deleteCard)
+                .register(CommandType.DELETE_ACCOUNT, Action::deleteAccount)
+                .register(CommandType.SET_ALIAS, Action::setAlias)
+                .register(CommandType.SET_MIN_BALANCE, Action::setMinBalance)
+                .register(CommandType.CHECK_CARD_STATUS, Action::checkCardStatus)
+                .register(CommandType.ADD_INTEREST, Action::addInterest)
+                .register(CommandType.ACCRUE_INTEREST, Action::accrueInterest)
+                .register(CommandType.CHANGE_INTEREST_RATE, Action::changeInterestRate)
+                .register(CommandType.SPLIT_PAYMENT, Action::splitPayment)
+                .register(CommandType.ACCEPT_SPLIT_PAYMENT, Action::acceptSplitPayment)
+                .register(CommandType.REJECT_SPLIT_PAYMENT, Action::rejectSplitPayment);
     }
 
     /**
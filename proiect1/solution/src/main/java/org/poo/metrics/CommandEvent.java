@@ -0,0 +1,38 @@
+package org.poo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event covering the execution of one command.
+ */
+@Name("org.poo.Command")
+@Label("Command")
+@Category("J-POO-Morgan")
+@Description("Execution of one bank command")
+public final class CommandEvent extends jdk.jfr.Event {
+    @Label("Command")
+    private String command;
+
+    @Label("Timestamp")
+    private int timestamp;
+
+    @Label("Allocated")
+    @DataAmount
+    private long allocated;
+
+    /**
+     * @param commandName
+     * @param commandTimestamp
+     * @param allocatedBytes bytes allocated by the command, or -1 if unknown
+     */
+    public void set(final String commandName, final int commandTimestamp,
+                    final long allocatedBytes) {
+        this.command = commandName;
+        this.timestamp = commandTimestamp;
+        this.allocated = allocatedBytes;
+    }
+}
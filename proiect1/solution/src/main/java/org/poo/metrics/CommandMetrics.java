@@ -0,0 +1,169 @@
+package org.poo.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.poo.commands.CommandType;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Latency, count and allocation of every command type over one run.
+ * A run executes its commands on a single thread, so the collector is not
+ * thread safe: each run owns its own, and commands are bracketed by
+ * {@link #begin()} and {@link #end(CommandType, int)}.
+ */
+public final class CommandMetrics {
+    private static final double P50 = 0.5;
+    private static final double P99 = 0.99;
+    private static final double NANOS_PER_MICRO = 1_000;
+    private static final double NANOS_PER_MILLI = 1_000_000;
+    private static final double NANOS_PER_SECOND = 1_000_000_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final boolean jfrEvents;
+    private final LatencyHistogram[] latencies =
+            new LatencyHistogram[CommandType.values().length];
+    private final long[] allocated = new long[CommandType.values().length];
+    private final long runStart = System.nanoTime();
+
+    private long reportCacheHits;
+    private long reportCacheMisses;
+
+    private long commandStart;
+    private long allocatedAtStart;
+    private CommandEvent event;
+
+    /**
+     * @param jfrEvents whether every command is also emitted as a
+     *                  {@link CommandEvent}
+     */
+    public CommandMetrics(final boolean jfrEvents) {
+        this.jfrEvents = jfrEvents;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Marks the start of a command.
+     */
+    public void begin() {
+        if (jfrEvents) {
+            event = new CommandEvent();
+            event.begin();
+        }
+        allocatedAtStart = allocatedBytes();
+        commandStart = System.nanoTime();
+    }
+
+    /**
+     * Records the command started by the last {@link #begin()}.
+     * @param type
+     * @param timestamp
+     */
+    public void end(final CommandType type, final int timestamp) {
+        long elapsed = System.nanoTime() - commandStart;
+        long bytes = allocatedAtStart < 0 ? -1 : allocatedBytes() - allocatedAtStart;
+
+        latencies[type.ordinal()].record(elapsed);
+        allocated[type.ordinal()] += Math.max(0, bytes);
+
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.set(type.getName(), timestamp, bytes);
+                event.commit();
+            }
+            event = null;
+        }
+    }
+
+    /**
+     * Sets the totals of the report caches of the run, reported with the
+     * commands.
+     * @param hits reports served from a cache
+     * @param misses reports built
+     */
+    public void setReportCache(final long hits, final long misses) {
+        this.reportCacheHits = hits;
+        this.reportCacheMisses = misses;
+    }
+
+    /**
+     * @param input name of the input file the run read
+     * @return the summary of the run, with one entry per command type seen
+     */
+    public ObjectNode toJson(final String input) {
+        long wallTime = System.nanoTime() - runStart;
+        long commands = 0;
+        long commandTime = 0;
+
+        ObjectNode root = JsonNodeFactory.instance.objectNode();
+        root.put("input", input);
+        ObjectNode byCommand = JsonNodeFactory.instance.objectNode();
+        for (CommandType type : CommandType.values()) {
+            LatencyHistogram histogram = latencies[type.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            commands += histogram.getCount();
+            commandTime += histogram.getTotal();
+
+            ObjectNode node = byCommand.putObject(type.getName());
+            node.put("count", histogram.getCount());
+            node.put("totalMs", histogram.getTotal() / NANOS_PER_MILLI);
+            node.put("p50Us", histogram.percentile(P50) / NANOS_PER_MICRO);
+            node.put("p99Us", histogram.percentile(P99) / NANOS_PER_MICRO);
+            node.put("maxUs", histogram.getMax() / NANOS_PER_MICRO);
+            if (THREADS != null) {
+                node.put("allocatedBytes", allocated[type.ordinal()]);
+                node.put("bytesPerCommand", allocated[type.ordinal()] / histogram.getCount());
+            }
+        }
+
+        root.put("commands", commands);
+        root.put("wallTimeMs", wallTime / NANOS_PER_MILLI);
+        root.put("commandTimeMs", commandTime / NANOS_PER_MILLI);
+        root.put("commandsPerSecond", wallTime == 0 ? 0 : commands * NANOS_PER_SECOND / wallTime);
+        root.set("byCommand", byCommand);
+        if (reportCacheHits + reportCacheMisses > 0) {
+            root.putObject("reportCache")
+                    .put("hits", reportCacheHits)
+                    .put("misses", reportCacheMisses);
+        }
+        return root;
+    }
+
+    /**
+     * Writes the summary of the run as JSON.
+     * @param mapper
+     * @param input name of the input file the run read
+     * @param file
+     * @throws IOException in case of exceptions to writing
+     */
+    public void write(final ObjectMapper mapper, final String input, final File file)
+            throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file, toJson(input));
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        }
+        return null;
+    }
+}
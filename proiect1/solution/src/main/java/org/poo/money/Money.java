@@ -0,0 +1,172 @@
+package org.poo.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money. An amount is a {@code long} count of minor units,
+ * {@link #UNITS_PER_MAJOR} to one unit of currency, so sums and
+ * differences are exact integer arithmetic. Amounts are kept as raw longs
+ * rather than wrapped, and these helpers do the scaling; products with a
+ * rate and divisions round once, with an explicit rounding mode.
+ * <p>
+ * The reference outputs of the bank were produced with doubles and are
+ * compared to three decimals, so the unit is much finer than a cent:
+ * rounding every operation to cents would drift from them.
+ */
+public final class Money {
+    /** Minor units in one unit of currency. */
+    public static final long UNITS_PER_MAJOR = 100_000_000L;
+
+    /** Rounding used wherever the caller does not ask for another one. */
+    public static final RoundingMode DEFAULT_ROUNDING = RoundingMode.HALF_EVEN;
+
+    private static final double LONG_RANGE = 0x1p63;
+    private static final double HALF = 0.5;
+    /** Below this, every long is a double. */
+    private static final double EXACT_UNITS = 0x1p53;
+    /** Below this, the integers and halves around a double are doubles too. */
+    private static final double EXACT_PRODUCT = 0x1p52;
+
+    private Money() {
+    }
+
+    /**
+     * @param amount amount in units of currency
+     * @return the amount in minor units
+     */
+    public static long of(final double amount) {
+        return of(amount, DEFAULT_ROUNDING);
+    }
+
+    /**
+     * @param amount amount in units of currency
+     * @param mode rounding applied to the fraction of a minor unit
+     * @return the amount in minor units
+     */
+    public static long of(final double amount, final RoundingMode mode) {
+        return round(amount * UNITS_PER_MAJOR, mode);
+    }
+
+    /**
+     * @param units amount in minor units
+     * @return the amount in units of currency, as written to the output
+     */
+    public static double toDouble(final long units) {
+        return (double) units / UNITS_PER_MAJOR;
+    }
+
+    /**
+     * @param units amount in minor units
+     * @param factor exchange rate, interest rate or any other factor
+     * @return the product, in minor units
+     */
+    public static long multiply(final long units, final double factor) {
+        return multiply(units, factor, DEFAULT_ROUNDING);
+    }
+
+    /**
+     * Rounds the exact product once. The product of doubles is used when it
+     * is exact, or when it does not sit on a rounding boundary; otherwise,
+     * as for amounts past 2^53 minor units, the product is computed in
+     * {@link BigDecimal}.
+     * @param units amount in minor units
+     * @param factor exchange rate, interest rate or any other factor
+     * @param mode rounding applied to the fraction of a minor unit
+     * @return the product, in minor units
+     */
+    public static long multiply(final long units, final double factor, final RoundingMode mode) {
+        if (factor == 1) {
+            return units;
+        }
+        double product = units * factor;
+        if (Math.abs((double) units) < EXACT_UNITS && Math.abs(product) < EXACT_PRODUCT
+                && (Math.fma(units, factor, -product) == 0 || !onBoundary(product, mode))) {
+            return round(product, mode);
+        }
+        if (!Double.isFinite(factor)) {
+            throw new ArithmeticException(factor + " is not a factor");
+        }
+        return new BigDecimal(units).multiply(new BigDecimal(factor))
+                .setScale(0, mode).longValueExact();
+    }
+
+    /**
+     * @return whether rounding the value with the mode could go either way
+     *         depending on what a rounding error took from it
+     */
+    private static boolean onBoundary(final double value, final RoundingMode mode) {
+        return switch (mode) {
+            case HALF_UP, HALF_DOWN, HALF_EVEN -> value - Math.floor(value) == HALF;
+            default -> value == Math.rint(value);
+        };
+    }
+
+    /**
+     * @param units amount in minor units
+     * @param parts number of equal shares
+     * @return one share, in minor units
+     */
+    public static long divide(final long units, final int parts) {
+        return divide(units, parts, DEFAULT_ROUNDING);
+    }
+
+    /**
+     * Exact integer division followed by a single rounding step.
+     * @param units amount in minor units
+     * @param parts number of equal shares
+     * @param mode rounding applied to the remainder
+     * @return one share, in minor units
+     */
+    public static long divide(final long units, final int parts, final RoundingMode mode) {
+        long quotient = units / parts;
+        long remainder = units % parts;
+        if (remainder == 0) {
+            return quotient;
+        }
+
+        int sign = (units < 0) == (parts < 0) ? 1 : -1;
+        long doubled = Math.abs(remainder) * 2;
+        long divisor = Math.abs((long) parts);
+        boolean awayFromZero = switch (mode) {
+            case UP -> true;
+            case DOWN -> false;
+            case CEILING -> sign > 0;
+            case FLOOR -> sign < 0;
+            case HALF_UP -> doubled >= divisor;
+            case HALF_DOWN -> doubled > divisor;
+            case HALF_EVEN -> doubled > divisor || doubled == divisor && quotient % 2 != 0;
+            case UNNECESSARY -> throw new ArithmeticException(
+                    units + " minor units cannot be split evenly in " + parts);
+        };
+        return awayFromZero ? quotient + sign : quotient;
+    }
+
+    /**
+     * @param value a number of minor units, possibly fractional
+     * @param mode rounding applied to the fraction
+     * @return the value rounded to a whole number of minor units
+     */
+    static long round(final double value, final RoundingMode mode) {
+        double rounded = switch (mode) {
+            case UP -> value < 0 ? Math.floor(value) : Math.ceil(value);
+            case DOWN -> value < 0 ? Math.ceil(value) : Math.floor(value);
+            case CEILING -> Math.ceil(value);
+            case FLOOR -> Math.floor(value);
+            case HALF_UP -> Math.copySign(Math.floor(Math.abs(value) + HALF), value);
+            case HALF_DOWN -> Math.copySign(Math.ceil(Math.abs(value) - HALF), value);
+            case HALF_EVEN -> Math.rint(value);
+            case UNNECESSARY -> {
+                if (value != Math.rint(value)) {
+                    throw new ArithmeticException(value + " is not a whole number of minor units");
+                }
+                yield value;
+            }
+        };
+
+        if (Double.isNaN(rounded) || Math.abs(rounded) >= LONG_RANGE) {
+            throw new ArithmeticException(value + " minor units is out of range");
+        }
+        return (long) rounded;
+    }
+}
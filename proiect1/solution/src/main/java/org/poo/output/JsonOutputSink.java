@@ -0,0 +1,56 @@
+package org.poo.output;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes the output array to a file entry by entry, so no entry is kept
+ * once it has been written. The pretty mode writes exactly the bytes of
+ * {@link ObjectMapper#writerWithDefaultPrettyPrinter()}.
+ */
+public final class JsonOutputSink implements OutputSink {
+    private final ObjectMapper mapper;
+    private final JsonGenerator generator;
+
+    public JsonOutputSink(
+            final ObjectMapper mapper,
+            final File file,
+            final boolean pretty) throws IOException {
+        this.mapper = mapper;
+        this.generator = mapper.getFactory().createGenerator(file, JsonEncoding.UTF8);
+        if (pretty) {
+            generator.setPrettyPrinter(new DefaultPrettyPrinter());
+        }
+        generator.writeStartArray();
+    }
+
+    /**
+     * @param entry
+     * @throws UncheckedIOException if the entry could not be written
+     */
+    @Override
+    public void add(final ObjectNode entry) {
+        try {
+            mapper.writeTree(generator, entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes the output array and the file.
+     * @throws IOException in case of exceptions to writing
+     */
+    @Override
+    public void close() throws IOException {
+        generator.writeEndArray();
+        generator.close();
+    }
+}
@@ -0,0 +1,15 @@
+package org.poo.output;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.Closeable;
+
+/**
+ * Destination of the output entries of a run, in the order they are produced.
+ */
+public interface OutputSink extends Closeable {
+    /**
+     * @param entry the output entry of one command
+     */
+    void add(ObjectNode entry);
+}
@@ -1,8 +1,9 @@
 package org.poo.reporting;
 
+import org.poo.money.Money;
 import org.poo.accounts.Account;
 import org.poo.accounts.SavingsAccount;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
@@ -11,10 +12,8 @@ import org.poo.transactions.Transaction;
 import java.util.List;
 
 public class AccountReportVisitor implements AccountVisitor {
-    protected final ObjectMapper mapper = new ObjectMapper();
-
     @Getter
-    protected final ObjectNode root = mapper.createObjectNode();
+    protected final ObjectNode root = JsonNodeFactory.instance.objectNode();
 
     protected final int start;
     protected final int end;
@@ -34,11 +33,11 @@ public class AccountReportVisitor implements AccountVisitor {
     @Override
     public void visit(final Account account) {
         root.put("IBAN", account.getIban());
-        root.put("balance", account.getBalance());
+        root.put("balance", Money.toDouble(account.getBalance()));
         root.put("currency", account.getCurrency());
 
         transactionsNode = root.putArray("transactions");
-        this.acceptTransactions(account.getTransactions());
+        this.acceptTransactions(account.getTransactions().between(start, end));
     }
 
     /**
@@ -55,22 +54,20 @@ public class AccountReportVisitor implements AccountVisitor {
     @Override
     public void visit(final SavingsAccount savingsAccount) {
         root.put("IBAN", savingsAccount.getIban());
-        root.put("balance", savingsAccount.getBalance());
+        root.put("balance", Money.toDouble(savingsAccount.getBalance()));
         root.put("currency", savingsAccount.getCurrency());
 
         transactionsNode = root.putArray("transactions");
 
         var compatibleTransactions = List.of("interestRateChange", "interest");
-        this.acceptTransactions(savingsAccount.getTransactions()
+        this.acceptTransactions(savingsAccount.getTransactions().between(start, end)
                 .stream().filter(t -> compatibleTransactions.contains(t.getType())).toList());
     }
 
     /**
-     * @param transactions
+     * @param transactions the transactions of the report's time range
      */
     public void acceptTransactions(final List<Transaction> transactions) {
-        transactions.stream()
-                .filter(t -> t.getTimestamp() >= start && t.getTimestamp() <= end)
-                .forEach(transaction -> transaction.accept(this));
+        transactions.forEach(transaction -> transaction.accept(this));
     }
 }
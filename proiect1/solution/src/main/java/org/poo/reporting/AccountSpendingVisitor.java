@@ -1,15 +1,17 @@
 package org.poo.reporting;
 
+import org.poo.money.Money;
 import org.poo.accounts.Account;
 import org.poo.accounts.SavingsAccount;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.poo.accounts.SpendingAggregates;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.poo.transactions.CardPayment;
 import org.poo.transactions.Transaction;
-import org.poo.users.Database;
 
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.TreeMap;
 
 public final class AccountSpendingVisitor extends AccountReportVisitor {
     public AccountSpendingVisitor(
@@ -29,27 +31,22 @@ public final class AccountSpendingVisitor extends AccountReportVisitor {
 
         ArrayNode commerciantTransactions = root.putArray("commerciants");
 
-        var transactions = account.getTransactions().stream()
-                .filter(t -> t.getTimestamp() >= start
-                        && t.getTimestamp() <= end
-                        && t.getType().equals("cardPayment"))
-                .toList();
-
-        for (String commerciant : Database.getInstance().getCommerciantInputs()) {
-            var selectedTransactionsForComm = transactions.stream()
-                    .filter(transaction -> ((CardPayment) transaction)
-                            .getCommerciant().equals(commerciant))
-                    .toList();
-
-            if (!selectedTransactionsForComm.isEmpty()) {
-                double total = selectedTransactionsForComm.stream().mapToDouble(
-                        transaction -> ((CardPayment) transaction).getAmount()).sum();
-                ObjectNode commerciantNode = new ObjectMapper().createObjectNode();
-                commerciantNode.put("commerciant", commerciant);
-                commerciantNode.put("total", total);
-                commerciantTransactions.add(commerciantNode);
+        SpendingAggregates spending = account.getSpending();
+        TreeMap<String, Double> totals = new TreeMap<>();
+        for (int id = 0; id < spending.size(); id++) {
+            OptionalLong total = spending.totalBetween(id, start, end);
+            if (total.isPresent()) {
+                totals.put(account.getDatabase().getCommerciant(id),
+                        Money.toDouble(total.getAsLong()));
             }
         }
+
+        totals.forEach((commerciant, total) -> {
+            ObjectNode commerciantNode = JsonNodeFactory.instance.objectNode();
+            commerciantNode.put("commerciant", commerciant);
+            commerciantNode.put("total", total);
+            commerciantTransactions.add(commerciantNode);
+        });
     }
 
     @Override
@@ -60,9 +57,7 @@ public final class AccountSpendingVisitor extends AccountReportVisitor {
     @Override
     public void acceptTransactions(final List<Transaction> transactions) {
         transactions.stream()
-                .filter(t -> t.getTimestamp() >= start
-                        && t.getTimestamp() <= end
-                        && t.getType().equals("cardPayment"))
+                .filter(t -> t.getType().equals("cardPayment"))
                 .forEach(t -> t.accept(this));
     }
 }
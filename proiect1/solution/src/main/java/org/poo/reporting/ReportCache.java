@@ -0,0 +1,98 @@
+package org.poo.reporting;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The last reports built for one account, keyed by their kind and time
+ * range, and stamped with the version of the account they were built at.
+ * A report is served again only while the account keeps that version, so
+ * any deposit, withdrawal, transfer or new transaction makes the next
+ * query rebuild it. The least recently used report is dropped once the
+ * cache is full.
+ * <p>
+ * Reports of the same account may be asked for in parallel, so the cache
+ * is synchronized. A cached report is handed out as is and must not be
+ * modified.
+ */
+public final class ReportCache {
+    /**
+     * Reports kept per account. Set with -Dorg.poo.reports.cacheSize=N;
+     * zero turns caching off.
+     */
+    private static final int CAPACITY =
+            Math.max(0, Integer.getInteger("org.poo.reports.cacheSize", 4));
+
+    /**
+     * The kinds of report an account builds.
+     */
+    public enum Kind {
+        REPORT, SPENDINGS
+    }
+
+    /** Created on the first report, since most accounts never get one. */
+    private LinkedHashMap<Key, Entry> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param kind
+     * @param start
+     * @param end
+     * @param version the current version of the account
+     * @param build builds the report when it is not cached at this version
+     * @return the report
+     */
+    public synchronized ObjectNode get(
+            final Kind kind,
+            final int start,
+            final int end,
+            final long version,
+            final Supplier<ObjectNode> build) {
+        if (CAPACITY == 0) {
+            misses++;
+            return build.get();
+        }
+        if (entries == null) {
+            entries = new LinkedHashMap<>();
+        }
+
+        Key key = new Key(kind, start, end);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == version) {
+            hits++;
+            entries.putLast(key, entry);
+            return entry.report;
+        }
+
+        misses++;
+        ObjectNode report = build.get();
+        entries.putLast(key, new Entry(version, report));
+        if (entries.size() > CAPACITY) {
+            entries.pollFirstEntry();
+        }
+        return report;
+    }
+
+    /**
+     * @return the number of reports served from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of reports built
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private record Key(Kind kind, int start, int end) {
+    }
+
+    private record Entry(long version, ObjectNode report) {
+    }
+}
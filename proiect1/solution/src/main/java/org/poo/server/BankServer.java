@@ -0,0 +1,368 @@
+package org.poo.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.poo.commands.Command;
+import org.poo.commands.CommandType;
+import org.poo.fileio.CommandInput;
+import org.poo.fileio.ObjectInput;
+import org.poo.journal.Journal;
+import org.poo.journal.Recovery;
+import org.poo.main.Main;
+import org.poo.output.OutputSink;
+import org.poo.users.Database;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps one database warm and runs the commands posted to it over HTTP,
+ * on localhost only.
+ * <p>
+ * {@code POST /commands} takes one command, or an array of commands, in
+ * the format of the input files, and answers with the array of output
+ * entries they produced. Every exchange is handled on its own virtual
+ * thread, but commands only run on the mutation lane, a single thread
+ * that takes one request at a time: the commands of a request run in
+ * order and back to back, and requests run in the order they reach the
+ * lane, as the commands of an input file would.
+ * <p>
+ * When the database is journaled, the journal is forced to disk before a
+ * request is answered, so every acknowledged command survives a crash.
+ * <p>
+ * A command that fails stops its request: the commands before it stay
+ * applied, and the answer is a 500 that carries their output entries
+ * along with the error. A command that cannot be read is a 400, and
+ * nothing of its request runs.
+ */
+public final class BankServer implements Closeable {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int NOT_FOUND = 404;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int INTERNAL_ERROR = 500;
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_JOURNAL_GROUP = 64;
+
+    private final Database database;
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService lane = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("mutation-lane").factory());
+
+    private BankServer(final Database database, final int port) throws IOException {
+        this.database = database;
+        this.server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(handlers);
+        server.createContext("/commands", this::handle);
+    }
+
+    /**
+     * @param database the state the commands run against
+     * @param port the port to listen on, or 0 for any free one
+     * @return the running server
+     * @throws IOException if the port cannot be bound
+     */
+    public static BankServer start(final Database database, final int port) throws IOException {
+        BankServer bankServer = new BankServer(database, port);
+        bankServer.server.start();
+        return bankServer;
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Runs commands on the mutation lane, as a request would, until one of
+     * them fails. The journal is forced to disk either way.
+     * @param commands
+     * @return the output entries of the commands that ran, and the failure
+     *         that stopped them, if any
+     * @throws InterruptedException if interrupted while waiting for the lane
+     * @throws ExecutionException if the journal could not be forced to disk
+     */
+    public Outcome run(final List<Command> commands)
+            throws InterruptedException, ExecutionException {
+        return lane.submit(() -> {
+            ArraySink output = new ArraySink();
+            int ran = 0;
+            try {
+                for (; ran < commands.size(); ran++) {
+                    Main.execute(database, commands.get(ran), output);
+                }
+                return new Outcome(output.entries, null);
+            } catch (RuntimeException e) {
+                return new Outcome(output.entries, "Command " + ran + " ("
+                        + commands.get(ran).type().getName() + ") failed: " + e);
+            } finally {
+                if (database.getJournal() != null) {
+                    database.getJournal().sync();
+                }
+            }
+        }).get();
+    }
+
+    /**
+     * Stops accepting requests and waits for the lane to finish the ones
+     * it already took.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        lane.close();
+        handlers.close();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"/commands".equals(exchange.getRequestURI().getPath())) {
+                respond(exchange, NOT_FOUND, error("Unknown path"));
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().add("Allow", "POST");
+                respond(exchange, METHOD_NOT_ALLOWED, error("Commands must be POSTed"));
+                return;
+            }
+
+            List<Command> commands;
+            try {
+                commands = parse(MAPPER.readTree(exchange.getRequestBody()));
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                respond(exchange, BAD_REQUEST, error(e.getMessage()));
+                return;
+            }
+
+            try {
+                Outcome outcome = run(commands);
+                if (outcome.error() == null) {
+                    respond(exchange, OK, outcome.output());
+                } else {
+                    ObjectNode body = error(outcome.error());
+                    body.set("output", outcome.output());
+                    respond(exchange, INTERNAL_ERROR, body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, INTERNAL_ERROR, error("Interrupted"));
+            } catch (ExecutionException e) {
+                respond(exchange, INTERNAL_ERROR, error(String.valueOf(e.getCause())));
+            }
+        }
+    }
+
+    /**
+     * @return the commands of a request body; commands with an unknown name
+     *         are left out, as in the input files
+     */
+    private static List<Command> parse(final JsonNode body)
+            throws JsonProcessingException {
+        if (body == null || !(body.isObject() || body.isArray())) {
+            throw new IllegalArgumentException("Expected a command or an array of commands");
+        }
+        List<Command> commands = new ArrayList<>();
+        for (JsonNode node : body.isObject() ? List.of(body) : body) {
+            CommandInput input = MAPPER.treeToValue(node, CommandInput.class);
+            Command command;
+            try {
+                command = CommandType.parse(input);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(
+                        "Invalid " + input.getCommand() + " command: " + e, e);
+            }
+            if (command != null) {
+                commands.add(command);
+            }
+        }
+        return commands;
+    }
+
+    private static ObjectNode error(final String message) {
+        return JsonNodeFactory.instance.objectNode().put("error", message);
+    }
+
+    private static void respond(final HttpExchange exchange, final int status,
+                                final JsonNode body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Starts a server until the process is stopped.
+     * <ul>
+     *     <li>{@code --port=N}: the port, 8080 by default;</li>
+     *     <li>{@code --input=FILE}: an input file whose users and exchange
+     *     rates the bank starts with; only read on a fresh start, since a
+     *     snapshot or journal already holds them;</li>
+     *     <li>{@code --snapshot=FILE}: a snapshot the bank starts from, and
+     *     that receives the final state when the server stops;</li>
+     *     <li>{@code --journal=FILE}: a journal replayed on start, after the
+     *     snapshot if there is one, and continued by the server.</li>
+     * </ul>
+     * @param args options, as {@code --name=value}
+     * @throws IOException if the state cannot be loaded or the port bound
+     */
+    public static void main(final String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        Path snapshot = path(options.get("snapshot"));
+        Path journal = path(options.get("journal"));
+        boolean fresh = (snapshot == null || !Files.exists(snapshot))
+                && (journal == null || !Files.exists(journal));
+        ObjectInput input = null;
+        if (options.containsKey("input")) {
+            if (fresh) {
+                input = MAPPER.readValue(new File(options.get("input")), ObjectInput.class);
+            } else {
+                System.out.println("Ignoring --input: the bank is restored from its"
+                        + " snapshot and journal");
+            }
+        }
+        Database database = load(snapshot, journal);
+        if (input != null) {
+            Main.setup(database, input);
+        }
+
+        BankServer bankServer = start(database,
+                Integer.parseInt(options.getOrDefault("port", String.valueOf(DEFAULT_PORT))));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            bankServer.close();
+            if (!saveOnShutdown(database, snapshot)) {
+                // the JVM is exiting already; halt to make the status stick
+                Runtime.getRuntime().halt(1);
+            }
+        }));
+        System.out.println("Listening on http://localhost:" + bankServer.getPort() + "/commands");
+    }
+
+    /**
+     * Writes the final snapshot, if there is one, and closes the journal.
+     * The journal is closed even when the snapshot cannot be written, since
+     * the next start can still recover from it.
+     * @return whether both succeeded
+     */
+    private static boolean saveOnShutdown(final Database database, final Path snapshot) {
+        boolean saved = true;
+        if (snapshot != null) {
+            try {
+                database.writeSnapshot(snapshot);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not write the snapshot " + snapshot + ": " + e);
+                saved = false;
+            }
+        }
+        if (database.getJournal() != null) {
+            try {
+                database.getJournal().close();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not close the journal: " + e);
+                saved = false;
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Journaled commands that fail again on replay are reported on stderr;
+     * their failure was answered when they first ran.
+     * @return the database of the snapshot and the journal, with the
+     *         journal open for the commands to come
+     */
+    private static Database load(final Path snapshot, final Path journal) throws IOException {
+        boolean hasSnapshot = snapshot != null && Files.exists(snapshot);
+        boolean hasJournal = journal != null && Files.exists(journal);
+
+        Database database;
+        if (hasJournal) {
+            Recovery.Recovered recovered = hasSnapshot
+                    ? Main.recover(snapshot, journal) : Main.recover(journal);
+            for (Recovery.Failure failure : recovered.failures()) {
+                System.err.println("Journaled command " + failure.command()
+                        + " failed again on replay: " + failure.error());
+            }
+            database = recovered.database();
+        } else if (hasSnapshot) {
+            database = Database.readSnapshot(snapshot);
+        } else {
+            database = new Database();
+        }
+
+        if (journal != null) {
+            database.setJournal(hasJournal
+                    ? Journal.open(journal, DEFAULT_JOURNAL_GROUP)
+                    : Journal.create(journal, DEFAULT_JOURNAL_GROUP));
+            if (hasSnapshot && !hasJournal) {
+                // the snapshot refers to records of a journal that is gone
+                database.writeSnapshot(snapshot);
+            }
+        }
+        return database;
+    }
+
+    private static Path path(final String option) {
+        return option == null ? null : Paths.get(option);
+    }
+
+    /**
+     * The output entries of a request, and the error of the command that
+     * stopped it, or null if every command ran.
+     * @param output
+     * @param error
+     */
+    public record Outcome(ArrayNode output, String error) {
+    }
+
+    /**
+     * Collects the output entries of one request.
+     */
+    private static final class ArraySink implements OutputSink {
+        private final ArrayNode entries = JsonNodeFactory.instance.arrayNode();
+
+        @Override
+        public void add(final ObjectNode entry) {
+            entries.add(entry);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
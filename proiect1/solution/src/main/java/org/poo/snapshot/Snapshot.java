@@ -0,0 +1,63 @@
+package org.poo.snapshot;
+
+import org.poo.journal.Journal;
+import org.poo.users.Database;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A database loaded from a binary snapshot, with the sequence number of
+ * the last journal record the snapshot includes. Replaying the journal
+ * from that record on brings the database up to date.
+ * <p>
+ * A snapshot stores the users, accounts, cards, aliases and transaction
+ * logs as they are, instead of the commands that built them, so loading
+ * one costs a pass over the state rather than a run of the whole history.
+ * The layout is described in {@link SnapshotFormat}.
+ *
+ * @param database
+ * @param journalLsn sequence number of the last journal record applied to
+ *                   the database, or 0 if the run was not journaled
+ */
+public record Snapshot(Database database, long journalLsn) {
+    /**
+     * Writes the state of a database to a snapshot. The file is written
+     * next to its destination and moved over it once complete, so a crash
+     * leaves either the old snapshot or the new one.
+     * @param database
+     * @param path
+     * @throws IOException in case of exceptions to writing
+     */
+    public static void write(final Database database, final Path path) throws IOException {
+        Journal journal = database.getJournal();
+        long journalLsn = 0;
+        if (journal != null) {
+            journal.sync();
+            journalLsn = journal.getLastLsn();
+        }
+
+        Path partial = path.resolveSibling(path.getFileName() + ".partial");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            new SnapshotWriter(database, journalLsn).write(channel);
+            channel.force(true);
+        }
+        Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param path
+     * @return the database stored in the snapshot
+     * @throws IOException if the file is not a complete snapshot of a
+     *                     supported version
+     */
+    public static Snapshot read(final Path path) throws IOException {
+        return new SnapshotReader(path, Files.readAllBytes(path)).read();
+    }
+}
@@ -0,0 +1,65 @@
+package org.poo.snapshot;
+
+/**
+ * Layout of a snapshot file.
+ * <p>
+ * The file starts with a fixed header: a magic number, the format version,
+ * the journal sequence number and the current timestamp. Records follow,
+ * each made of its length as a 4-byte int, a kind byte and a payload.
+ * Readers skip the kinds they do not know and whatever a record holds past
+ * the fields they read, so a later version can add records and fields at
+ * the end of a record without breaking older readers; anything else bumps
+ * {@link #VERSION}.
+ * <p>
+ * Payloads use variable-length integers: ids and counts as unsigned
+ * LEB128, timestamps, amounts, and the IBANs and card numbers packed by
+ * {@link org.poo.utils.IdGenerator} zigzag-encoded. Every string is stored
+ * once, in the {@link #STRINGS} record, and referred to by its index plus
+ * one, with 0 for null. Users, accounts, cards and transactions are
+ * numbered by the order of their records, and records only refer to the
+ * ones written before them; the contents of accounts and users come last,
+ * as {@link #ACCOUNT_CONTENTS} and {@link #USER_ACCOUNTS} records. A
+ * transaction shared by several accounts, such as a split payment, is
+ * written once and listed in every log it belongs to. Split payments still
+ * waiting for users to accept them are written as transactions too, and
+ * listed by {@link #PENDING_SPLITS} records. The file ends with an
+ * {@link #END} record holding the number of records before it.
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x504F4F53;
+    static final int VERSION = 1;
+    static final int HEADER = 2 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+    static final int RECORD_HEADER = Integer.BYTES;
+
+    static final byte STRINGS = 1;
+    static final byte ID_GENERATOR = 2;
+    static final byte EXCHANGE_RATES = 3;
+    static final byte USER = 4;
+    static final byte ACCOUNT = 5;
+    static final byte CARD = 6;
+    static final byte TRANSACTION = 7;
+    static final byte ACCOUNT_CONTENTS = 8;
+    static final byte USER_ACCOUNTS = 9;
+    static final byte END = 10;
+    static final byte PENDING_SPLITS = 11;
+
+    static final byte CLASSIC_ACCOUNT = 0;
+    static final byte SAVINGS_ACCOUNT = 1;
+
+    static final byte CARD_KIND = 0;
+    static final byte ONE_TIME_CARD = 1;
+
+    static final byte ACCOUNT_CREATION = 1;
+    static final byte CARD_CREATION = 2;
+    static final byte CARD_DESTROY = 3;
+    static final byte CARD_PAYMENT = 4;
+    static final byte ERROR = 5;
+    static final byte INTEREST_INCOME = 6;
+    static final byte INTEREST_RATE_CHANGE = 7;
+    static final byte MIN_BALANCE = 8;
+    static final byte MONEY_TRANSFER = 9;
+    static final byte SPLIT_PAYMENT = 10;
+
+    private SnapshotFormat() {
+    }
+}
@@ -0,0 +1,288 @@
+package org.poo.snapshot;
+
+import org.poo.accounts.Account;
+import org.poo.accounts.SavingsAccount;
+import org.poo.cards.Card;
+import org.poo.cards.OneTimeCard;
+import org.poo.transactions.AccountCreation;
+import org.poo.transactions.CardCreation;
+import org.poo.transactions.CardDestroy;
+import org.poo.transactions.CardPayment;
+import org.poo.transactions.ErrorTransaction;
+import org.poo.transactions.InterestIncome;
+import org.poo.transactions.InterestRateChange;
+import org.poo.transactions.MinBalanceTransaction;
+import org.poo.transactions.MoneyTransfer;
+import org.poo.transactions.SplitPayment;
+import org.poo.transactions.Transaction;
+import org.poo.users.Database;
+import org.poo.users.User;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes a snapshot into a new database. Objects are created from their
+ * records without the side effects of the regular constructors, so no
+ * identifier is drawn and no creation is recorded twice; the indexes, the
+ * spending aggregates and the identifier generators are rebuilt at the end.
+ */
+final class SnapshotReader {
+    private static final int VARINT_BITS = 7;
+    private static final int VARINT_MASK = 0x7F;
+    private static final int VARINT_MORE = 0x80;
+
+    private final Path path;
+    private final ByteBuffer in;
+    private final Database database = new Database();
+
+    private String[] strings = new String[0];
+    private final List<User> users = new ArrayList<>();
+    private final List<Account> accounts = new ArrayList<>();
+    private final List<Card> cards = new ArrayList<>();
+    private final List<Transaction> transactions = new ArrayList<>();
+
+    SnapshotReader(final Path path, final byte[] bytes) {
+        this.path = path;
+        this.in = ByteBuffer.wrap(bytes);
+    }
+
+    Snapshot read() throws IOException {
+        try {
+            if (in.remaining() < SnapshotFormat.HEADER || in.getInt() != SnapshotFormat.MAGIC) {
+                throw new IOException(path + " is not a snapshot");
+            }
+            int version = in.getInt();
+            if (version > SnapshotFormat.VERSION) {
+                throw new IOException(path + " has unsupported snapshot version " + version);
+            }
+            long journalLsn = in.getLong();
+            database.setTimestamp(in.getInt());
+
+            int records = 0;
+            while (in.hasRemaining()) {
+                int length = in.getInt();
+                int end = in.position() + length;
+                if (length < 1 || end > in.limit()) {
+                    break;
+                }
+                byte kind = in.get();
+                if (kind == SnapshotFormat.END) {
+                    if (getVarInt() != records) {
+                        break;
+                    }
+                    finish();
+                    return new Snapshot(database, journalLsn);
+                }
+                readRecord(kind);
+                in.position(end);
+                records++;
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                 | IllegalArgumentException | ClassCastException e) {
+            throw new IOException(path + " is a corrupt snapshot", e);
+        }
+        throw new IOException(path + " is a truncated snapshot");
+    }
+
+    private void readRecord(final byte kind) {
+        switch (kind) {
+            case SnapshotFormat.STRINGS -> readStrings();
+            case SnapshotFormat.ID_GENERATOR -> database.getIdGenerator()
+                    .skipTo(getVarInt(), getVarInt());
+            case SnapshotFormat.EXCHANGE_RATES -> readExchangeRates();
+            case SnapshotFormat.USER -> readUser();
+            case SnapshotFormat.ACCOUNT -> readAccount();
+            case SnapshotFormat.CARD -> readCard();
+            case SnapshotFormat.TRANSACTION -> transactions.add(readTransaction());
+            case SnapshotFormat.ACCOUNT_CONTENTS -> readAccountContents();
+            case SnapshotFormat.USER_ACCOUNTS -> readUserAccounts();
+            case SnapshotFormat.PENDING_SPLITS -> readPendingSplits();
+            default -> { }
+        }
+    }
+
+    private void readStrings() {
+        strings = new String[getVarInt()];
+        for (int i = 0; i < strings.length; i++) {
+            int length = getVarInt();
+            strings[i] = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        }
+    }
+
+    private void readExchangeRates() {
+        String[] currencies = new String[getVarInt()];
+        for (int i = 0; i < currencies.length; i++) {
+            currencies[i] = getString();
+            database.getExchangeRates().intern(currencies[i]);
+        }
+        int revisions = getVarInt();
+        for (int i = 0; i < revisions; i++) {
+            String from = currencies[getVarInt()];
+            String to = currencies[getVarInt()];
+            double rate = in.getDouble();
+            database.addExchangeRate(from, to, rate, (int) getVarLong());
+        }
+    }
+
+    private void readUser() {
+        User user = new User(database, getString(), getString(), getString());
+        int aliases = getVarInt();
+        for (int i = 0; i < aliases; i++) {
+            user.getAliases().put(getString(), getString());
+        }
+        users.add(user);
+    }
+
+    private void readAccount() {
+        byte kind = in.get();
+        User owner = users.get(getVarInt());
+        long iban = getVarLong();
+        String currency = getString();
+        long balance = getVarLong();
+        long minBalance = getVarLong();
+
+        Account account = kind == SnapshotFormat.SAVINGS_ACCOUNT
+                ? SavingsAccount.restore(owner, iban, currency, in.getDouble())
+                : Account.restore(owner, iban, currency);
+        account.setBalance(balance);
+        account.setMinBalance(minBalance);
+        accounts.add(account);
+    }
+
+    private void readCard() {
+        byte kind = in.get();
+        long cardNumber = getVarLong();
+        String status = getString();
+        User holder = users.get(getVarInt());
+        Account account = accounts.get(getVarInt());
+
+        cards.add(kind == SnapshotFormat.ONE_TIME_CARD
+                ? OneTimeCard.restore(cardNumber, status, holder, account, in.get() != 0)
+                : Card.restore(cardNumber, status, holder, account));
+    }
+
+    private Transaction readTransaction() {
+        byte kind = in.get();
+        int timestamp = (int) getVarLong();
+        return switch (kind) {
+            case SnapshotFormat.ACCOUNT_CREATION -> new AccountCreation(
+                    accounts.get(getVarInt()), getString(), timestamp);
+            case SnapshotFormat.CARD_CREATION -> new CardCreation(
+                    cards.get(getVarInt()), timestamp);
+            case SnapshotFormat.CARD_DESTROY -> new CardDestroy(
+                    cards.get(getVarInt()), timestamp);
+            case SnapshotFormat.CARD_PAYMENT -> new CardPayment(
+                    cards.get(getVarInt()), getVarLong(), getString(), timestamp);
+            case SnapshotFormat.ERROR -> new ErrorTransaction(getString(), timestamp);
+            case SnapshotFormat.INTEREST_INCOME -> new InterestIncome(
+                    timestamp, getVarLong(), getString());
+            case SnapshotFormat.INTEREST_RATE_CHANGE -> new InterestRateChange(
+                    timestamp, in.getDouble());
+            case SnapshotFormat.MIN_BALANCE -> new MinBalanceTransaction(
+                    getVarLong(), getVarLong(), getVarLong(), getString(), timestamp);
+            case SnapshotFormat.MONEY_TRANSFER -> new MoneyTransfer(
+                    getVarLong(), getVarLong(), getVarLong(), getVarLong(), getString(),
+                    getString(), timestamp, getString());
+            case SnapshotFormat.SPLIT_PAYMENT -> readSplitPayment(timestamp);
+            default -> throw new IllegalArgumentException("Unknown transaction kind " + kind);
+        };
+    }
+
+    private SplitPayment readSplitPayment(final int timestamp) {
+        long amount = getVarLong();
+        String currency = getString();
+        List<Account> involved = new ArrayList<>();
+        int size = getVarInt();
+        for (int i = 0; i < size; i++) {
+            involved.add(accounts.get(getVarInt()));
+        }
+        String errorMessage = getString();
+        String splitPaymentType = getString();
+        long[] shares = new long[getVarInt()];
+        for (int i = 0; i < shares.length; i++) {
+            shares[i] = getVarLong();
+        }
+        return SplitPayment.restore(involved, timestamp, amount, currency, errorMessage,
+                splitPaymentType, shares, getVarInt());
+    }
+
+    private void readAccountContents() {
+        Account account = accounts.get(getVarInt());
+        int cardCount = getVarInt();
+        for (int i = 0; i < cardCount; i++) {
+            account.getCards().add(cards.get(getVarInt()));
+        }
+        int transactionCount = getVarInt();
+        for (int i = 0; i < transactionCount; i++) {
+            Transaction transaction = transactions.get(getVarInt());
+            account.getTransactions().add(transaction);
+            if (transaction instanceof CardPayment payment) {
+                account.getSpending().record(database.internCommerciant(payment.getCommerciant()),
+                        payment.getTimestamp(), payment.getAmount());
+            }
+        }
+    }
+
+    private void readUserAccounts() {
+        User user = users.get(getVarInt());
+        int live = getVarInt();
+        for (int i = 0; i < live; i++) {
+            user.getAccounts().add(accounts.get(getVarInt()));
+        }
+        int destroyed = getVarInt();
+        for (int i = 0; i < destroyed; i++) {
+            user.getDestroyedAccounts().add(accounts.get(getVarInt()));
+        }
+    }
+
+    private void readPendingSplits() {
+        User user = users.get(getVarInt());
+        int count = getVarInt();
+        for (int i = 0; i < count; i++) {
+            user.addPendingSplit((SplitPayment) transactions.get(getVarInt()));
+        }
+    }
+
+    /**
+     * Indexes the users in their original order, with their accounts and
+     * cards.
+     */
+    private void finish() {
+        for (User user : users) {
+            database.addUser(user);
+        }
+    }
+
+    private String getString() {
+        int id = getVarInt();
+        return id == 0 ? null : strings[id - 1];
+    }
+
+    private int getVarInt() {
+        return (int) getUnsigned();
+    }
+
+    private long getVarLong() {
+        long value = getUnsigned();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long getUnsigned() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & VARINT_MASK) << shift;
+            shift += VARINT_BITS;
+        } while ((b & VARINT_MORE) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,484 @@
+package org.poo.snapshot;
+
+import org.poo.accounts.Account;
+import org.poo.accounts.SavingsAccount;
+import org.poo.cards.Card;
+import org.poo.cards.OneTimeCard;
+import org.poo.transactions.AccountCreation;
+import org.poo.transactions.CardCreation;
+import org.poo.transactions.CardDestroy;
+import org.poo.transactions.CardPayment;
+import org.poo.transactions.ErrorTransaction;
+import org.poo.transactions.InterestIncome;
+import org.poo.transactions.InterestRateChange;
+import org.poo.transactions.MinBalanceTransaction;
+import org.poo.transactions.MoneyTransfer;
+import org.poo.transactions.SplitPayment;
+import org.poo.transactions.Transaction;
+import org.poo.users.Database;
+import org.poo.users.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes a database as a snapshot. Numbering walks the users, then their
+ * accounts, then the cards and transactions of every account numbered so
+ * far, so deleted accounts and destroyed cards that a transaction still
+ * refers to are written as well.
+ */
+final class SnapshotWriter {
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int VARINT_BITS = 7;
+    private static final int VARINT_MASK = 0x7F;
+    private static final int VARINT_MORE = 0x80;
+    private static final int LONG_SIGN_SHIFT = 63;
+
+    private final Database database;
+    private final long journalLsn;
+
+    private final Map<User, Integer> userIds = new IdentityHashMap<>();
+    private final Map<Account, Integer> accountIds = new IdentityHashMap<>();
+    private final Map<Card, Integer> cardIds = new IdentityHashMap<>();
+    private final Map<Transaction, Integer> transactionIds = new IdentityHashMap<>();
+    private final List<Account> accounts = new ArrayList<>();
+    private final List<Card> cards = new ArrayList<>();
+    private final List<Transaction> transactions = new ArrayList<>();
+
+    private final HashMap<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    private final Buffer body = new Buffer();
+    private int records = 0;
+
+    SnapshotWriter(final Database database, final long journalLsn) {
+        this.database = database;
+        this.journalLsn = journalLsn;
+    }
+
+    void write(final FileChannel channel) throws IOException {
+        number();
+
+        writeIdGenerator();
+        writeExchangeRates();
+        for (User user : database.getUsers()) {
+            writeUser(user);
+        }
+        for (Account account : accounts) {
+            writeAccount(account);
+        }
+        for (Card card : cards) {
+            writeCard(card);
+        }
+        for (Transaction transaction : transactions) {
+            writeTransaction(transaction);
+        }
+        for (Account account : accounts) {
+            writeAccountContents(account);
+        }
+        for (User user : database.getUsers()) {
+            writeUserAccounts(user);
+        }
+        for (User user : database.getUsers()) {
+            writePendingSplits(user);
+        }
+
+        Buffer head = new Buffer();
+        head.putFixedInt(SnapshotFormat.MAGIC);
+        head.putFixedInt(SnapshotFormat.VERSION);
+        head.putFixedLong(journalLsn);
+        head.putFixedInt(database.getTimestamp());
+        int start = head.begin(SnapshotFormat.STRINGS);
+        head.putVarInt(strings.size());
+        for (String value : strings) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            head.putVarInt(utf8.length);
+            head.putBytes(utf8, utf8.length);
+        }
+        head.end(start);
+
+        start = body.begin(SnapshotFormat.END);
+        body.putVarInt(records + 1);
+        body.end(start);
+
+        head.writeTo(channel);
+        body.writeTo(channel);
+    }
+
+    private void number() {
+        for (User user : database.getUsers()) {
+            userIds.putIfAbsent(user, userIds.size());
+        }
+        for (User user : database.getUsers()) {
+            user.getAccounts().forEach(this::account);
+            user.getDestroyedAccounts().forEach(this::account);
+        }
+        for (User user : database.getUsers()) {
+            pendingSplits(user).forEach(this::transaction);
+        }
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            account.getCards().forEach(this::card);
+            account.getTransactions().forEach(this::transaction);
+        }
+    }
+
+    private int user(final User user) {
+        Integer id = userIds.get(user);
+        if (id == null) {
+            throw new IllegalStateException("User " + user.getEmail()
+                    + " is not part of the database");
+        }
+        return id;
+    }
+
+    private int account(final Account account) {
+        Integer id = accountIds.get(account);
+        if (id == null) {
+            id = accounts.size();
+            accountIds.put(account, id);
+            accounts.add(account);
+        }
+        return id;
+    }
+
+    private int card(final Card card) {
+        Integer id = cardIds.get(card);
+        if (id == null) {
+            id = cards.size();
+            cardIds.put(card, id);
+            cards.add(card);
+            account(card.getAccount());
+        }
+        return id;
+    }
+
+    private int transaction(final Transaction transaction) {
+        Integer id = transactionIds.get(transaction);
+        if (id == null) {
+            id = transactions.size();
+            transactionIds.put(transaction, id);
+            transactions.add(transaction);
+            switch (transaction) {
+                case AccountCreation creation -> account(creation.getAccount());
+                case CardCreation creation -> card(creation.getCard());
+                case CardDestroy destroy -> card(destroy.getCard());
+                case CardPayment payment -> card(payment.getCard());
+                case SplitPayment split -> split.getAccounts().forEach(this::account);
+                default -> { }
+            }
+        }
+        return id;
+    }
+
+    private void writeIdGenerator() {
+        int start = body.begin(SnapshotFormat.ID_GENERATOR);
+        body.putVarInt(database.getIdGenerator().getIbanCount());
+        body.putVarInt(database.getIdGenerator().getCardNumberCount());
+        end(start);
+    }
+
+    private void writeExchangeRates() {
+        int start = body.begin(SnapshotFormat.EXCHANGE_RATES);
+        List<String> currencies = database.getExchangeRates().getCurrencies();
+        body.putVarInt(currencies.size());
+        currencies.forEach(this::putString);
+
+        Buffer revisions = new Buffer();
+        int[] count = new int[1];
+        database.getExchangeRates().forEachRevision((from, to, rate, timestamp) -> {
+            revisions.putVarInt(database.getExchangeRates().getId(from));
+            revisions.putVarInt(database.getExchangeRates().getId(to));
+            revisions.putFixedDouble(rate);
+            revisions.putVarLong(timestamp);
+            count[0]++;
+        });
+        body.putVarInt(count[0]);
+        body.putBytes(revisions.bytes, revisions.size);
+        end(start);
+    }
+
+    private void writeUser(final User user) {
+        int start = body.begin(SnapshotFormat.USER);
+        putString(user.getFirstName());
+        putString(user.getLastName());
+        putString(user.getEmail());
+        body.putVarInt(user.getAliases().size());
+        user.getAliases().forEach((alias, iban) -> {
+            putString(alias);
+            putString(iban);
+        });
+        end(start);
+    }
+
+    private void writeAccount(final Account account) {
+        int start = body.begin(SnapshotFormat.ACCOUNT);
+        body.putByte(account instanceof SavingsAccount
+                ? SnapshotFormat.SAVINGS_ACCOUNT : SnapshotFormat.CLASSIC_ACCOUNT);
+        body.putVarInt(user(account.getOwner()));
+        body.putVarLong(account.getIbanId());
+        putString(account.getCurrency());
+        body.putVarLong(account.getBalance());
+        body.putVarLong(account.getMinBalance());
+        if (account instanceof SavingsAccount savings) {
+            body.putFixedDouble(savings.getInterestRate());
+        }
+        end(start);
+    }
+
+    private void writeCard(final Card card) {
+        int start = body.begin(SnapshotFormat.CARD);
+        body.putByte(card instanceof OneTimeCard
+                ? SnapshotFormat.ONE_TIME_CARD : SnapshotFormat.CARD_KIND);
+        body.putVarLong(card.getCardNumberId());
+        putString(card.getStatus());
+        body.putVarInt(user(card.getCardHolder()));
+        body.putVarInt(accountIds.get(card.getAccount()));
+        if (card instanceof OneTimeCard oneTime) {
+            body.putByte((byte) (oneTime.isUsed() ? 1 : 0));
+        }
+        end(start);
+    }
+
+    private void writeTransaction(final Transaction transaction) {
+        int start = body.begin(SnapshotFormat.TRANSACTION);
+        switch (transaction) {
+            case AccountCreation creation -> {
+                header(SnapshotFormat.ACCOUNT_CREATION, creation);
+                body.putVarInt(accountIds.get(creation.getAccount()));
+                putString(creation.getCurrency());
+            }
+            case CardCreation creation -> {
+                header(SnapshotFormat.CARD_CREATION, creation);
+                body.putVarInt(cardIds.get(creation.getCard()));
+            }
+            case CardDestroy destroy -> {
+                header(SnapshotFormat.CARD_DESTROY, destroy);
+                body.putVarInt(cardIds.get(destroy.getCard()));
+            }
+            case CardPayment payment -> {
+                header(SnapshotFormat.CARD_PAYMENT, payment);
+                body.putVarInt(cardIds.get(payment.getCard()));
+                body.putVarLong(payment.getAmount());
+                putString(payment.getCommerciant());
+            }
+            case ErrorTransaction error -> {
+                header(SnapshotFormat.ERROR, error);
+                putString(error.getDescription());
+            }
+            case InterestIncome income -> {
+                header(SnapshotFormat.INTEREST_INCOME, income);
+                body.putVarLong(income.getAmount());
+                putString(income.getCurrency());
+            }
+            case InterestRateChange change -> {
+                header(SnapshotFormat.INTEREST_RATE_CHANGE, change);
+                body.putFixedDouble(change.getInterestRate());
+            }
+            case MinBalanceTransaction minBalance -> {
+                header(SnapshotFormat.MIN_BALANCE, minBalance);
+                body.putVarLong(minBalance.getAccountIbanId());
+                body.putVarLong(minBalance.getMinimumBalance());
+                body.putVarLong(minBalance.getCurrentBalance());
+                putString(minBalance.getCurrency());
+            }
+            case MoneyTransfer transfer -> {
+                header(SnapshotFormat.MONEY_TRANSFER, transfer);
+                body.putVarLong(transfer.getSenderIbanId());
+                body.putVarLong(transfer.getReceiverIbanId());
+                body.putVarLong(transfer.getAmount());
+                body.putVarLong(transfer.getNewBalance());
+                putString(transfer.getCurrency());
+                putString(transfer.getDescription());
+                putString(transfer.getType());
+            }
+            case SplitPayment split -> {
+                header(SnapshotFormat.SPLIT_PAYMENT, split);
+                body.putVarLong(split.getAmount());
+                putString(split.getCurrency());
+                body.putVarInt(split.getAccounts().size());
+                for (Account account : split.getAccounts()) {
+                    body.putVarInt(accountIds.get(account));
+                }
+                putString(split.isHasError() ? split.getErrorMessage() : null);
+                putString(split.getSplitPaymentType());
+                body.putVarInt(split.getShares().length);
+                for (long share : split.getShares()) {
+                    body.putVarLong(share);
+                }
+                body.putVarInt(split.getPendingUsers());
+            }
+            default -> throw new IllegalStateException("Cannot snapshot a "
+                    + transaction.getClass().getSimpleName());
+        }
+        end(start);
+    }
+
+    private void writeAccountContents(final Account account) {
+        int start = body.begin(SnapshotFormat.ACCOUNT_CONTENTS);
+        body.putVarInt(accountIds.get(account));
+        body.putVarInt(account.getCards().size());
+        for (Card card : account.getCards()) {
+            body.putVarInt(cardIds.get(card));
+        }
+        body.putVarInt(account.getTransactions().size());
+        for (Transaction transaction : account.getTransactions()) {
+            body.putVarInt(transactionIds.get(transaction));
+        }
+        end(start);
+    }
+
+    private void writeUserAccounts(final User user) {
+        int start = body.begin(SnapshotFormat.USER_ACCOUNTS);
+        body.putVarInt(user(user));
+        body.putVarInt(user.getAccounts().size());
+        for (Account account : user.getAccounts()) {
+            body.putVarInt(accountIds.get(account));
+        }
+        body.putVarInt(user.getDestroyedAccounts().size());
+        for (Account account : user.getDestroyedAccounts()) {
+            body.putVarInt(accountIds.get(account));
+        }
+        end(start);
+    }
+
+    private void writePendingSplits(final User user) {
+        List<SplitPayment> pending = pendingSplits(user);
+        if (pending.isEmpty()) {
+            return;
+        }
+        int start = body.begin(SnapshotFormat.PENDING_SPLITS);
+        body.putVarInt(user(user));
+        body.putVarInt(pending.size());
+        for (SplitPayment split : pending) {
+            body.putVarInt(transactionIds.get(split));
+        }
+        end(start);
+    }
+
+    /**
+     * @return the splits waiting for the user's answer, oldest first within
+     *         each type, without the ones already settled
+     */
+    private static List<SplitPayment> pendingSplits(final User user) {
+        List<SplitPayment> pending = new ArrayList<>();
+        user.getPendingSplits().values().forEach(queue -> queue.stream()
+                .filter(split -> !split.isResolved())
+                .forEach(pending::add));
+        return pending;
+    }
+
+    private void header(final byte kind, final Transaction transaction) {
+        body.putByte(kind);
+        body.putVarLong(transaction.getTimestamp());
+    }
+
+    private void end(final int start) {
+        body.end(start);
+        records++;
+    }
+
+    private void putString(final String value) {
+        if (value == null) {
+            body.putVarInt(0);
+            return;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            stringIds.put(value, id);
+        }
+        body.putVarInt(id + 1);
+    }
+
+    /**
+     * Growable byte array with the encodings of the format.
+     */
+    private static final class Buffer {
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int size = 0;
+
+        /**
+         * Opens a record, leaving room for its length.
+         * @return the offset of the record
+         */
+        int begin(final byte kind) {
+            int start = size;
+            ensure(SnapshotFormat.RECORD_HEADER);
+            size += SnapshotFormat.RECORD_HEADER;
+            putByte(kind);
+            return start;
+        }
+
+        void end(final int start) {
+            ByteBuffer.wrap(bytes).putInt(start, size - start - SnapshotFormat.RECORD_HEADER);
+        }
+
+        void putByte(final byte value) {
+            ensure(1);
+            bytes[size++] = value;
+        }
+
+        void putBytes(final byte[] values, final int length) {
+            ensure(length);
+            System.arraycopy(values, 0, bytes, size, length);
+            size += length;
+        }
+
+        void putFixedInt(final int value) {
+            ensure(Integer.BYTES);
+            ByteBuffer.wrap(bytes).putInt(size, value);
+            size += Integer.BYTES;
+        }
+
+        void putFixedLong(final long value) {
+            ensure(Long.BYTES);
+            ByteBuffer.wrap(bytes).putLong(size, value);
+            size += Long.BYTES;
+        }
+
+        void putFixedDouble(final double value) {
+            putFixedLong(Double.doubleToRawLongBits(value));
+        }
+
+        void putVarInt(final int value) {
+            putUnsigned(Integer.toUnsignedLong(value));
+        }
+
+        void putVarLong(final long value) {
+            putUnsigned((value << 1) ^ (value >> LONG_SIGN_SHIFT));
+        }
+
+        private void putUnsigned(final long value) {
+            ensure(Long.BYTES + 2);
+            long rest = value;
+            while ((rest & ~VARINT_MASK) != 0) {
+                bytes[size++] = (byte) ((rest & VARINT_MASK) | VARINT_MORE);
+                rest >>>= VARINT_BITS;
+            }
+            bytes[size++] = (byte) rest;
+        }
+
+        void writeTo(final FileChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void ensure(final int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package org.poo.transactions;
 
+import lombok.Getter;
 import org.poo.accounts.Account;
 
+@Getter
 public final class AccountCreation extends Transaction {
     private final Account account;
     private final String currency;
@@ -1,8 +1,10 @@
 package org.poo.transactions;
 
+import lombok.Getter;
 import org.poo.cards.Card;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+@Getter
 public final class CardCreation extends Transaction {
     private final Card card;
 
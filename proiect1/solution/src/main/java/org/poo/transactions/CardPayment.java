@@ -1,12 +1,13 @@
 package org.poo.transactions;
 
+import org.poo.money.Money;
 import org.poo.cards.Card;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 
 @Getter
 public final class CardPayment extends Transaction {
-    private final double amount;
+    private final long amount;
     private final Card card;
     private final String commerciant;
 
@@ -17,7 +18,7 @@ public final class CardPayment extends Transaction {
 
     public CardPayment(
             final Card card,
-            final double amount,
+            final long amount,
             final String commerciant,
             final int timestamp) {
         super("Card payment", timestamp);
@@ -29,7 +30,7 @@ public final class CardPayment extends Transaction {
     @Override
     public ObjectNode toJson() {
         ObjectNode objectNode = super.toJson();
-        objectNode.put("amount", amount);
+        objectNode.put("amount", Money.toDouble(amount));
         objectNode.put("commerciant", commerciant);
         return objectNode;
     }
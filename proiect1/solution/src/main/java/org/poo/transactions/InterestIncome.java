@@ -1,14 +1,17 @@
 package org.poo.transactions;
 
+import lombok.Getter;
+import org.poo.money.Money;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+@Getter
 public final class InterestIncome extends Transaction {
-    private final double amount;
+    private final long amount;
     private final String currency;
 
     public InterestIncome(
             final int timestamp,
-            final double amount,
+            final long amount,
             final String currency) {
         super("Interest rate income", timestamp);
         this.amount = amount;
@@ -23,7 +26,7 @@ public final class InterestIncome extends Transaction {
     @Override
     public ObjectNode toJson() {
         var baseTransaction = super.toJson();
-        baseTransaction.put("amount", amount);
+        baseTransaction.put("amount", Money.toDouble(amount));
         baseTransaction.put("currency", currency);
         return baseTransaction;
     }
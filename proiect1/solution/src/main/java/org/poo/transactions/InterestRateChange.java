@@ -1,6 +1,11 @@
 package org.poo.transactions;
 
+import lombok.Getter;
+
+@Getter
 public final class InterestRateChange extends Transaction {
+    private final double interestRate;
+
     public InterestRateChange(
             final int timestamp,
             final double interestRate) {
@@ -8,6 +13,7 @@ public final class InterestRateChange extends Transaction {
            String.format("Interest rate of the account changed to %s", interestRate),
            timestamp
         );
+        this.interestRate = interestRate;
     }
 
     @Override
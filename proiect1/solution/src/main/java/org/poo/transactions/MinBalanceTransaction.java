@@ -1,22 +1,29 @@
 package org.poo.transactions;
 
+import lombok.Getter;
+import org.poo.money.Money;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.poo.users.Database;
+import org.poo.utils.IdGenerator;
 
+@Getter
 public final class MinBalanceTransaction extends Transaction {
-    private final String accountIBAN;
-    private final double minimumBalance;
-    private final double currentBalance;
+    /** The IBAN, packed by {@link IdGenerator}. */
+    private final long accountIbanId;
+    private final long minimumBalance;
+    private final long currentBalance;
+    private final String currency;
 
     public MinBalanceTransaction(
-            final String accountIBAN,
-            final double minimumBalance,
-            final double currentBalance,
+            final long accountIbanId,
+            final long minimumBalance,
+            final long currentBalance,
+            final String currency,
             final int timestamp) {
         super("Minimum balance transaction", timestamp);
-        this.accountIBAN = accountIBAN;
+        this.accountIbanId = accountIbanId;
         this.minimumBalance = minimumBalance;
         this.currentBalance = currentBalance;
+        this.currency = currency;
     }
 
     @Override
@@ -27,11 +34,9 @@ public final class MinBalanceTransaction extends Transaction {
     @Override
     public ObjectNode toJson() {
         ObjectNode objectNode = super.toJson();
-        objectNode.put("accountIBAN", accountIBAN);
-        objectNode.put("minimumBalance", minimumBalance + " "
-                + Database.getInstance().getAccountByIBAN(accountIBAN).getCurrency());
-        objectNode.put("currentBalance", currentBalance + " "
-                + Database.getInstance().getAccountByIBAN(accountIBAN).getCurrency());
+        objectNode.put("accountIBAN", IdGenerator.formatIban(accountIbanId));
+        objectNode.put("minimumBalance", Money.toDouble(minimumBalance) + " " + currency);
+        objectNode.put("currentBalance", Money.toDouble(currentBalance) + " " + currency);
         return objectNode;
     }
 }
@@ -1,51 +1,47 @@
 package org.poo.transactions;
 
+import org.poo.money.Money;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 import lombok.Setter;
-import org.poo.users.Database;
+import org.poo.utils.IdGenerator;
 
+@Getter
 public final class MoneyTransfer extends Transaction {
-    private final String senderIBAN;
-    private final String receiverIBAN;
-    private final double amount;
-    private double newBalance;
-    private String description;
+    /** The IBANs, packed by {@link IdGenerator}. */
+    private final long senderIbanId;
+    private final long receiverIbanId;
+    private final long amount;
+    private long newBalance;
+    private final String currency;
 
     @Setter @Getter
     private String type;
 
     public MoneyTransfer(
-            final String senderIBAN,
-            final String receiverIBAN,
-            final double amount,
-            final double newBalance,
+            final long senderIbanId,
+            final long receiverIbanId,
+            final long amount,
+            final long newBalance,
+            final String currency,
             final String description,
             final int timestamp,
             final String type) {
         super(description, timestamp);
-        this.receiverIBAN = receiverIBAN;
-        this.senderIBAN = senderIBAN;
+        this.receiverIbanId = receiverIbanId;
+        this.senderIbanId = senderIbanId;
         this.amount = amount;
         this.newBalance = newBalance;
+        this.currency = currency;
         this.type = type;
     }
 
     @Override
     public ObjectNode toJson() {
         ObjectNode objectNode = super.toJson();
-        objectNode.put("senderIBAN", senderIBAN);
-        objectNode.put("receiverIBAN", receiverIBAN);
-
-        if (type.equals("sent")) {
-            objectNode.put("amount", amount + " "
-                    + Database.getInstance()
-                    .getAccountByIBAN(senderIBAN).getCurrency());
-        } else {
-            objectNode.put("amount", amount + " "
-                    + Database.getInstance()
-                    .getAccountByIBAN(receiverIBAN).getCurrency());
-        }
+        objectNode.put("senderIBAN", IdGenerator.formatIban(senderIbanId));
+        objectNode.put("receiverIBAN", IdGenerator.formatIban(receiverIbanId));
+        objectNode.put("amount", Money.toDouble(amount) + " " + currency);
 
         objectNode.put("transferType", type);
         return objectNode;
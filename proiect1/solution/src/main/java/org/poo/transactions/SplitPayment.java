@@ -1,31 +1,73 @@
 package org.poo.transactions;
 
+import lombok.Getter;
+import org.poo.money.Money;
 import org.poo.accounts.Account;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.poo.users.Database;
+import org.poo.users.User;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * A payment shared by several accounts, each paying its share converted to
+ * its own currency. Untyped splits are settled as soon as they are made.
+ * Typed splits ("equal" or "custom") wait for every user involved to
+ * accept them: {@link #propose()} queues the split with each of those
+ * users, and the last acceptance settles it, or the first rejection fails
+ * it. Either way the split is then recorded in every account involved, at
+ * the timestamp it was made.
+ */
+@Getter
 public final class SplitPayment extends Transaction {
+    private static final String REJECTED = "One user rejected the payment.";
+
     private final List<Account> accounts;
-    private final double amount;
+    private final long amount;
     private final String currency;
+    /** "equal", "custom", or null for a split settled right away. */
+    private final String splitPaymentType;
+    /** The share of every account, in minor units of {@link #currency}. */
+    private final long[] shares;
+    /** Users that still have to accept the split. */
+    private int pendingUsers;
+    private boolean resolved;
 
     public SplitPayment(
             final List<Account> accounts,
             final int timestamp,
-            final double amount,
+            final long amount,
             final String currency) {
+        this(accounts, timestamp, amount, currency, null, null);
+    }
+
+    /**
+     * @param accounts
+     * @param timestamp
+     * @param amount amount in minor units
+     * @param currency
+     * @param splitPaymentType "equal", "custom", or null
+     * @param shares the share of every account in minor units, or null to
+     *               split the amount equally
+     */
+    public SplitPayment(
+            final List<Account> accounts,
+            final int timestamp,
+            final long amount,
+            final String currency,
+            final String splitPaymentType,
+            final long[] shares) {
         super(String
-                .format("Split payment of %.2f %s", amount, currency)
+                .format("Split payment of %.2f %s", Money.toDouble(amount), currency)
                 .replace(",", "."),
                 timestamp
         );
         this.accounts = accounts;
         this.amount = amount;
         this.currency = currency;
+        this.splitPaymentType = splitPaymentType;
+        this.shares = shares != null ? shares : equalShares(amount, accounts.size());
     }
 
     @Override
@@ -36,11 +78,50 @@ public final class SplitPayment extends Transaction {
     private boolean hasError;
     private String errorMessage;
 
+    /**
+     * @param accounts
+     * @param timestamp
+     * @param amount amount in minor units
+     * @param currency
+     * @param errorMessage the error the payment failed with, or null
+     * @param splitPaymentType
+     * @param shares
+     * @param pendingUsers users that still have to accept it, 0 if it is settled
+     * @return a payment restored from a snapshot
+     */
+    public static SplitPayment restore(
+            final List<Account> accounts,
+            final int timestamp,
+            final long amount,
+            final String currency,
+            final String errorMessage,
+            final String splitPaymentType,
+            final long[] shares,
+            final int pendingUsers) {
+        SplitPayment payment = new SplitPayment(accounts, timestamp, amount, currency,
+                splitPaymentType, shares);
+        payment.hasError = errorMessage != null;
+        payment.errorMessage = errorMessage;
+        payment.pendingUsers = pendingUsers;
+        payment.resolved = pendingUsers == 0;
+        return payment;
+    }
+
     @Override
     public ObjectNode toJson() {
         var baseTransaction = super.toJson();
+        if (splitPaymentType != null) {
+            baseTransaction.put("splitPaymentType", splitPaymentType);
+        }
         baseTransaction.put("currency", currency);
-        baseTransaction.put("amount", amount / accounts.size());
+        if ("custom".equals(splitPaymentType)) {
+            var amountForUsers = baseTransaction.putArray("amountForUsers");
+            for (long share : shares) {
+                amountForUsers.add(Money.toDouble(share));
+            }
+        } else {
+            baseTransaction.put("amount", Money.toDouble(Money.divide(amount, accounts.size())));
+        }
         var involvedAccounts = baseTransaction.putArray("involvedAccounts");
         accounts.forEach(account -> involvedAccounts.add(account.getIban()));
 
@@ -52,42 +133,115 @@ public final class SplitPayment extends Transaction {
     }
 
     /**
+     * Settles the split right away. Every account is checked before any is
+     * charged, and the error names the last account short of funds.
      */
     public void makePayment() {
-        var node = new ObjectMapper().createObjectNode();
+        long[] charges = convertShares();
+        for (int i = 0; i < accounts.size(); i++) {
+            if (accounts.get(i).getBalance() < charges[i]) {
+                fail(accounts.get(i));
+            }
+        }
+        record();
+        if (!hasError) {
+            charge(charges);
+        }
+    }
 
-        var splitAmount = amount / accounts.size();
+    /**
+     * Queues the split with every user owning one of its accounts, each
+     * once, in the order of their first account.
+     */
+    public void propose() {
+        List<User> users = new ArrayList<>();
+        for (Account account : accounts) {
+            User owner = account.getOwner();
+            if (!users.contains(owner)) {
+                users.add(owner);
+                owner.addPendingSplit(this);
+            }
+        }
+        pendingUsers = users.size();
+    }
+
+    /**
+     * Records one user's acceptance, and settles the split on the last one:
+     * if an account is short of funds, the first such account fails the
+     * split and nobody is charged.
+     */
+    public void accept() {
+        if (resolved || --pendingUsers > 0) {
+            return;
+        }
 
-        HashMap<String, Double> amountMap = new HashMap<>();
-        accounts.forEach(account -> amountMap.put(account.getIban(), 0.0));
+        long[] charges = convertShares();
+        for (int i = 0; i < accounts.size(); i++) {
+            if (accounts.get(i).getBalance() < charges[i]) {
+                fail(accounts.get(i));
+                record();
+                return;
+            }
+        }
+        record();
+        charge(charges);
+    }
 
-        this.checkIfAllAccountsAreEligibleForTransfer(amountMap, splitAmount);
-        this.accounts.forEach(acc -> acc.getTransactions().add(this));
-        if (this.hasError) {
+    /**
+     * Fails the split for everyone involved.
+     */
+    public void reject() {
+        if (resolved) {
             return;
         }
+        hasError = true;
+        errorMessage = REJECTED;
+        pendingUsers = 0;
+        record();
+    }
 
-        accounts.forEach(acc -> acc.withdraw(amountMap.get(acc.getIban())));
+    private void fail(final Account account) {
+        hasError = true;
+        errorMessage = String.format(
+                "Account %s has insufficient funds for a split payment.",
+                account.getIban()
+        );
+    }
+
+    private void record() {
+        resolved = true;
+        pendingUsers = 0;
+        accounts.forEach(account -> account.getTransactions().add(this));
+    }
+
+    private void charge(final long[] charges) {
+        for (int i = 0; i < accounts.size(); i++) {
+            accounts.get(i).withdraw(charges[i]);
+        }
     }
 
-    private void checkIfAllAccountsAreEligibleForTransfer(
-            final HashMap<String, Double> amountMap,
-            final double splitAmount) {
-        for (var account : accounts) {
+    /**
+     * @return the share of every account in its own currency, at the
+     *         current exchange rates
+     */
+    private long[] convertShares() {
+        long[] charges = new long[accounts.size()];
+        for (int i = 0; i < charges.length; i++) {
+            Account account = accounts.get(i);
             var exchangeRate = account.getCurrency().equals(currency)
                     ? 1.0
-                    : Database.getInstance()
+                    : account.getDatabase()
                         .getExchangeRate(this.currency, account.getCurrency());
+            charges[i] = Money.multiply(shares[i], exchangeRate);
+        }
+        return charges;
+    }
 
-            amountMap.put(account.getIban(), splitAmount * exchangeRate);
-
-            if (account.getBalance() < amountMap.get(account.getIban())) {
-                this.hasError = true;
-                this.errorMessage = String.format(
-                        "Account %s has insufficient funds for a split payment.",
-                        account.getIban()
-                );
-            }
+    private static long[] equalShares(final long amount, final int count) {
+        long[] shares = new long[count];
+        if (count > 0) {
+            Arrays.fill(shares, Money.divide(amount, count));
         }
+        return shares;
     }
 }
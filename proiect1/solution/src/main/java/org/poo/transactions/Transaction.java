@@ -1,6 +1,6 @@
 package org.poo.transactions;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 import org.poo.reporting.AccountElement;
@@ -9,6 +9,7 @@ import org.poo.reporting.AccountVisitor;
 public abstract class Transaction implements AccountElement {
     @Getter
     protected int timestamp;
+    @Getter
     protected String description;
 
     /**
@@ -32,7 +33,7 @@ public abstract class Transaction implements AccountElement {
      * @return
      */
     public ObjectNode toJson() {
-        ObjectNode objectNode = new ObjectMapper().createObjectNode();
+        ObjectNode objectNode = JsonNodeFactory.instance.objectNode();
         objectNode.put("timestamp", timestamp);
         objectNode.put("description", description);
         return objectNode;
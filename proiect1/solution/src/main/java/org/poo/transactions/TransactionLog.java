@@ -0,0 +1,115 @@
+package org.poo.transactions;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Append-only history of an account, kept sorted by timestamp. The
+ * timestamps are mirrored in a primitive array so that a time range is
+ * found with two binary searches and returned as a view, without copying.
+ */
+public final class TransactionLog extends AbstractList<Transaction> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private Transaction[] transactions = new Transaction[INITIAL_CAPACITY];
+    private int[] timestamps = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Appends a transaction. Commands run in timestamp order, so this is
+     * almost always a plain append; an older transaction is inserted after
+     * every transaction with a timestamp no later than its own.
+     * @param transaction
+     * @return always true
+     */
+    @Override
+    public boolean add(final Transaction transaction) {
+        if (size == transactions.length) {
+            transactions = Arrays.copyOf(transactions, size * 2);
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+        }
+
+        int timestamp = transaction.getTimestamp();
+        int index = size;
+        if (size > 0 && timestamps[size - 1] > timestamp) {
+            index = upperBound(timestamp);
+            System.arraycopy(transactions, index, transactions, index + 1, size - index);
+            System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+        }
+
+        transactions[index] = transaction;
+        timestamps[index] = timestamp;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * @return the number of changes made to the log, which only grows
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    @Override
+    public Transaction get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size "
+                    + size);
+        }
+        return transactions[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param start first timestamp, inclusive
+     * @param end last timestamp, inclusive
+     * @return a view of the transactions between the two timestamps
+     */
+    public List<Transaction> between(final int start, final int end) {
+        if (start > end) {
+            return subList(0, 0);
+        }
+        return subList(lowerBound(start), upperBound(end));
+    }
+
+    /**
+     * @return the index of the first transaction at or after the timestamp
+     */
+    private int lowerBound(final int timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the index of the first transaction after the timestamp
+     */
+    private int upperBound(final int timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,92 @@
+package org.poo.transactions;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merged view, in timestamp order, of several histories that are each
+ * already sorted by timestamp. The histories are merged lazily through a
+ * heap holding one cursor per history; ties keep the order of the
+ * histories, so the result matches a stable sort of their concatenation.
+ */
+public final class TransactionTimeline implements Iterable<Transaction> {
+    private final List<? extends List<Transaction>> histories;
+
+    /**
+     * @param histories lists of transactions, each sorted by timestamp
+     */
+    public TransactionTimeline(final List<? extends List<Transaction>> histories) {
+        this.histories = histories;
+    }
+
+    @Override
+    public Iterator<Transaction> iterator() {
+        return new MergeIterator();
+    }
+
+    private final class MergeIterator implements Iterator<Transaction> {
+        private final PriorityQueue<Cursor> heap = new PriorityQueue<>(
+                Math.max(1, histories.size()));
+
+        MergeIterator() {
+            for (int i = 0; i < histories.size(); i++) {
+                Iterator<Transaction> transactions = histories.get(i).iterator();
+                if (transactions.hasNext()) {
+                    heap.add(new Cursor(i, transactions));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heap.isEmpty();
+        }
+
+        @Override
+        public Transaction next() {
+            Cursor cursor = heap.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException();
+            }
+
+            Transaction transaction = cursor.current;
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+            return transaction;
+        }
+    }
+
+    /**
+     * Position in one history, ordered by the timestamp of its current
+     * transaction and then by the index of the history.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        private final int history;
+        private final Iterator<Transaction> transactions;
+        private Transaction current;
+
+        Cursor(final int history, final Iterator<Transaction> transactions) {
+            this.history = history;
+            this.transactions = transactions;
+            this.current = transactions.next();
+        }
+
+        boolean advance() {
+            if (!transactions.hasNext()) {
+                return false;
+            }
+            current = transactions.next();
+            return true;
+        }
+
+        @Override
+        public int compareTo(final Cursor other) {
+            int byTimestamp = Integer.compare(current.getTimestamp(),
+                    other.current.getTimestamp());
+            return byTimestamp != 0 ? byTimestamp : Integer.compare(history, other.history);
+        }
+    }
+}
@@ -2,49 +2,104 @@ package org.poo.users;
 
 
 import org.poo.accounts.Account;
+import org.poo.accounts.SavingsAccount;
+import org.poo.accounts.SavingsBook;
 import org.poo.cards.Card;
+import org.poo.exchange.ExchangeRateEngine;
+import org.poo.journal.Journal;
+import org.poo.snapshot.Snapshot;
 import lombok.Getter;
 import lombok.Setter;
-import org.poo.utils.Pair;
-import org.poo.utils.Utils;
+import org.poo.utils.IdGenerator;
+import org.poo.utils.LongMap;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 import java.util.ArrayList;
 
+/**
+ * The state of one run: users, exchange rates, the current timestamp,
+ * commerciants and the identifier generators. Every run builds its own,
+ * and every user, account and card reaches it through its owner.
+ */
 public final class Database {
-    private static final Database INSTANCE = new Database();
+    private static final String DEBUG_PROPERTY = "org.poo.database.debug";
 
     @Getter
     private final List<User> users = new ArrayList<>();
 
-    private final HashMap<Pair<String, String>, Double> exchangeRates = new HashMap<>();
+    private final HashMap<String, User> usersByEmail = new HashMap<>();
+    /** Accounts by packed IBAN and cards by packed number, see {@link IdGenerator}. */
+    private final LongMap<Account> accountsByIban = new LongMap<>();
+    private final LongMap<Card> cardsByNumber = new LongMap<>();
 
+    /**
+     * The savings accounts of the indexed accounts, for bank-wide interest
+     * runs.
+     */
+    @Getter
+    private final SavingsBook savings = new SavingsBook();
+
+    /**
+     * When set, every index update is followed by a full scan that checks
+     * the indexes against the user -> account -> card graph.
+     */
     @Getter @Setter
+    private boolean debug = Boolean.getBoolean(DEBUG_PROPERTY);
+
+    @Getter
+    private final ExchangeRateEngine exchangeRates = new ExchangeRateEngine();
+
+    /**
+     * Timestamp of the last command started. Commands running in parallel
+     * also keep their own in {@link #clock}, so each one records its
+     * transactions at its own timestamp.
+     */
     private int timestamp = 0;
+    private final ThreadLocal<Clock> clock = ThreadLocal.withInitial(Clock::new);
 
+    private final HashMap<String, Integer> commerciantIds = new HashMap<>();
+    private final List<String> commerciants = new ArrayList<>();
 
-    @Getter @Setter
-    private Set<String> commerciantInputs = new TreeSet<>();
+    @Getter
+    private final IdGenerator idGenerator = new IdGenerator();
 
-    private Database() {
-    }
+    /**
+     * Write-ahead journal of the run, or null when the run is not journaled.
+     */
+    @Getter @Setter
+    private Journal journal;
 
     /**
      * @param iban
      * @return
      */
     public Account getAccountByIBAN(final String iban) {
-        for (User user : users) {
-            for (Account account : user.getAccounts()) {
-                if (account.getIban().equals(iban)) {
-                    return account;
-                }
-            }
+        return getAccountByIBAN(IdGenerator.parseIban(iban));
+    }
+
+    /**
+     * @param ibanId a packed IBAN
+     * @return the account, or null if the IBAN is unknown
+     */
+    public Account getAccountByIBAN(final long ibanId) {
+        return accountsByIban.get(ibanId);
+    }
+
+    /**
+     * Looks up many accounts at once.
+     * @param ibanIds packed IBANs
+     * @param accounts receives the account of every IBAN, at the same index,
+     *                 or null where the IBAN is unknown
+     * @param count the number of IBANs to look up
+     */
+    public void getAccountsByIBAN(final long[] ibanIds, final Account[] accounts,
+                                  final int count) {
+        for (int i = 0; i < count; i++) {
+            accounts[i] = accountsByIban.get(ibanIds[i]);
         }
-        return null;
     }
 
     /**
@@ -52,16 +107,7 @@ public final class Database {
      * @return
      */
     public Card getCardByNumber(final String cardNumber) {
-        for (User user : users) {
-            for (Account account : user.getAccounts()) {
-                for (Card card : account.getCards()) {
-                    if (card.getCardNumber().equals(cardNumber)) {
-                        return card;
-                    }
-                }
-            }
-        }
-        return null;
+        return cardsByNumber.get(IdGenerator.parseCardNumber(cardNumber));
     }
 
     /**
@@ -69,71 +115,218 @@ public final class Database {
      * @return
      */
     public User getUserByEmail(final String email) {
-        return users.stream()
-                .filter(user -> user.getEmail().equals(email))
-                .findFirst()
-                .orElse(null);
+        return usersByEmail.get(email);
+    }
+
+    /**
+     * Adds a user and indexes it by email. The first user registered
+     * with an email keeps it, as the old linear lookup did.
+     * @param user
+     */
+    public void addUser(final User user) {
+        users.add(user);
+        usersByEmail.putIfAbsent(user.getEmail(), user);
+        for (Account account : user.getAccounts()) {
+            index(account);
+        }
+        checkInvariants();
+    }
+
+    /**
+     * Indexes an account and the cards it already holds.
+     * @param account
+     */
+    public void registerAccount(final Account account) {
+        index(account);
+        checkInvariants();
+    }
+
+    private void index(final Account account) {
+        accountsByIban.putIfAbsent(account.getIbanId(), account);
+        if (account instanceof SavingsAccount savingsAccount
+                && accountsByIban.get(account.getIbanId()) == account) {
+            savings.add(savingsAccount);
+        }
+        for (Card card : account.getCards()) {
+            cardsByNumber.putIfAbsent(card.getCardNumberId(), card);
+        }
+    }
+
+    /**
+     * Drops an account and all of its cards from the indexes.
+     * @param account
+     */
+    public void unregisterAccount(final Account account) {
+        accountsByIban.remove(account.getIbanId(), account);
+        if (account instanceof SavingsAccount savingsAccount) {
+            savings.remove(savingsAccount);
+        }
+        for (Card card : account.getCards()) {
+            cardsByNumber.remove(card.getCardNumberId(), card);
+        }
+        checkInvariants();
+    }
+
+    /**
+     * @param card
+     */
+    public void registerCard(final Card card) {
+        cardsByNumber.putIfAbsent(card.getCardNumberId(), card);
+        checkInvariants();
+    }
+
+    /**
+     * @param card
+     */
+    public void unregisterCard(final Card card) {
+        cardsByNumber.remove(card.getCardNumberId(), card);
+        checkInvariants();
+    }
+
+    /**
+     * Rebuilds the indexes from the user list and compares them with the
+     * maintained ones. Only runs in debug mode.
+     * @throws IllegalStateException if an index went out of sync
+     */
+    public void checkInvariants() {
+        if (!debug) {
+            return;
+        }
+
+        HashMap<String, User> expectedUsers = new HashMap<>();
+        LongMap<Account> expectedAccounts = new LongMap<>();
+        LongMap<Card> expectedCards = new LongMap<>();
+        int expectedSavings = 0;
+        for (User user : users) {
+            expectedUsers.putIfAbsent(user.getEmail(), user);
+            for (Account account : user.getAccounts()) {
+                expectedAccounts.putIfAbsent(account.getIbanId(), account);
+                if (account instanceof SavingsAccount savingsAccount
+                        && expectedAccounts.get(account.getIbanId()) == account) {
+                    expectedSavings++;
+                    if (!savings.contains(savingsAccount)) {
+                        throw new IllegalStateException("Savings book out of sync at timestamp "
+                                + getTimestamp());
+                    }
+                }
+                for (Card card : account.getCards()) {
+                    expectedCards.putIfAbsent(card.getCardNumberId(), card);
+                }
+            }
+        }
+
+        if (!expectedUsers.equals(usersByEmail)) {
+            throw new IllegalStateException("User index out of sync at timestamp "
+                    + getTimestamp());
+        }
+        if (!expectedAccounts.equals(accountsByIban)) {
+            throw new IllegalStateException("Account index out of sync at timestamp "
+                    + getTimestamp());
+        }
+        if (expectedSavings != savings.size()) {
+            throw new IllegalStateException("Savings book out of sync at timestamp "
+                    + getTimestamp());
+        }
+        if (!expectedCards.equals(cardsByNumber)) {
+            throw new IllegalStateException("Card index out of sync at timestamp "
+                    + getTimestamp());
+        }
     }
 
     /**
      * @param currency1
      * @param currency2
      * @param rate
+     * @param rateTimestamp the timestamp the rate is valid from
      */
     public void addExchangeRate(
             final String currency1,
             final String currency2,
-            final double rate) {
-        exchangeRates.put(new Pair<>(currency1, currency2), rate);
-        exchangeRates.put(new Pair<>(currency2, currency1), 1 / rate);
+            final double rate,
+            final int rateTimestamp) {
+        exchangeRates.addRate(currency1, currency2, rate, rateTimestamp);
     }
 
     /**
      * @param currency1
      * @param currency2
-     * @return
+     * @return the rate valid at the current timestamp
      */
     public double getExchangeRate(
             final String currency1,
             final String currency2) {
-        if (currency1.equals(currency2)) {
-            return 1;
-        }
-        Double rate = exchangeRates.get(new Pair<>(currency1, currency2));
-        if (rate != null) {
-            return rate;
-        }
+        return exchangeRates.getRate(currency1, currency2, getTimestamp());
+    }
 
-        List<String> froms = new ArrayList<>();
-        froms.add(currency1);
-
-        for (int i = 0; i < froms.size(); i++) {
-            String from = froms.get(i);
-            for (String to : exchangeRates.keySet().stream()
-                    .filter(pair -> pair.getValue0().equals(from))
-                    .map(Pair::getValue1).toList()) {
-                exchangeRates.put(new Pair<>(currency1, to),
-                        getExchangeRate(currency1, from)
-                                * getExchangeRate(from, to));
-                if (to.equals(currency2)) {
-                    return exchangeRates.get(new Pair<>(currency1, to));
-                }
-                froms.add(to);
-            }
+    /**
+     * @return the timestamp of the command running on this thread, or of
+     *         the last command started if this thread never ran one
+     */
+    public int getTimestamp() {
+        Clock own = clock.get();
+        return own.isSet ? own.value : timestamp;
+    }
+
+    /**
+     * Sets the timestamp for the calling thread and as the timestamp of
+     * the last command started.
+     * @param value
+     */
+    public void setTimestamp(final int value) {
+        Clock own = clock.get();
+        own.value = value;
+        own.isSet = true;
+        timestamp = value;
+    }
+
+    /**
+     * Commerciants are interned by card payments, which may run in
+     * parallel, so the interner is synchronized.
+     * @param commerciant
+     * @return the id of the commerciant, allocating one if it is new
+     */
+    public synchronized int internCommerciant(final String commerciant) {
+        Integer id = commerciantIds.get(commerciant);
+        if (id == null) {
+            id = commerciants.size();
+            commerciants.add(commerciant);
+            commerciantIds.put(commerciant, id);
         }
-        return exchangeRates.get(new Pair<>(currency1, currency2));
+        return id;
+    }
+
+    /**
+     * @param id
+     * @return the name of the commerciant with the given id
+     */
+    public synchronized String getCommerciant(final int id) {
+        return commerciants.get(id);
     }
 
-    public static Database getInstance() {
-        return INSTANCE;
+    /**
+     * Writes the whole state of the bank to a binary snapshot, tagged with
+     * the last record of the journal, if there is one.
+     * @param path
+     * @throws IOException in case of exceptions to writing
+     */
+    public void writeSnapshot(final Path path) throws IOException {
+        Snapshot.write(this, path);
+    }
+
+    /**
+     * @param path
+     * @return the database stored in a snapshot
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static Database readSnapshot(final Path path) throws IOException {
+        return Snapshot.read(path).database();
     }
 
     /**
+     * The timestamp of the command a thread is running.
      */
-    public void init() {
-        Utils.resetRandom();
-        users.clear();
-        exchangeRates.clear();
-        commerciantInputs.clear();
+    private static final class Clock {
+        private boolean isSet;
+        private int value;
     }
 }
@@ -3,12 +3,15 @@ package org.poo.users;
 import org.poo.accounts.Account;
 import org.poo.accounts.SavingsAccount;
 import org.poo.cards.Card;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 import org.poo.fileio.UserInput;
+import org.poo.transactions.SplitPayment;
+import org.poo.transactions.TransactionTimeline;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -21,17 +24,27 @@ public final class User {
     private final List<Account> accounts = new ArrayList<>();
     private final List<Account> destroyedAccounts = new ArrayList<>();
     private final HashMap<String, String> aliases = new HashMap<>();
+    /**
+     * Splits waiting for this user's answer, oldest first, by split type.
+     * A split settled or rejected through another user stays queued until
+     * it reaches the head, where it is dropped.
+     */
+    private final HashMap<String, ArrayDeque<SplitPayment>> pendingSplits = new HashMap<>();
+    private final Database database;
 
     public User(
+            final Database database,
             final String firstName,
             final String lastName,
             final String email) {
+        this.database = database;
         this.firstName = firstName;
         this.lastName = lastName;
         this.email = email;
     }
 
-    public User(final UserInput userInput) {
+    public User(final Database database, final UserInput userInput) {
+        this.database = database;
         this.firstName = userInput.getFirstName();
         this.lastName = userInput.getLastName();
         this.email = userInput.getEmail();
@@ -41,7 +54,7 @@ public final class User {
      * @param currency
      */
     public void createAccount(final String currency) {
-        accounts.add(new Account(this, currency));
+        addAccount(new Account(this, currency));
     }
 
     /**
@@ -51,34 +64,68 @@ public final class User {
     public void createSavingsAccount(
             final String currency,
             final double interestRate) {
-        accounts.add(new SavingsAccount(this, currency, interestRate));
+        addAccount(new SavingsAccount(this, currency, interestRate));
+    }
+
+    private void addAccount(final Account account) {
+        accounts.add(account);
+        database.registerAccount(account);
     }
 
     /**
      * @param cardNumber
-     * @return
+     * @return the card, if it belongs to one of this user's accounts
      */
     public Card getCardByNumber(final String cardNumber) {
-        for (Account account : accounts) {
-            for (Card card : account.getCards()) {
-                if (card.getCardNumber().equals(cardNumber)) {
-                    return card;
-                }
-            }
+        Card card = database.getCardByNumber(cardNumber);
+        if (card != null && card.getAccount().getOwner() == this) {
+            return card;
         }
         return null;
     }
 
+    /**
+     * @param split a split waiting for this user's answer
+     */
+    public void addPendingSplit(final SplitPayment split) {
+        pendingSplits.computeIfAbsent(split.getSplitPaymentType(), type -> new ArrayDeque<>())
+                .addLast(split);
+    }
+
+    /**
+     * Takes the oldest split of a type still waiting for this user's answer.
+     * @param splitPaymentType
+     * @return the split, or null if none is waiting
+     */
+    public SplitPayment pollPendingSplit(final String splitPaymentType) {
+        ArrayDeque<SplitPayment> queue = pendingSplits.get(splitPaymentType);
+        if (queue == null) {
+            return null;
+        }
+        SplitPayment split = queue.pollFirst();
+        while (split != null && split.isResolved()) {
+            split = queue.pollFirst();
+        }
+        return split;
+    }
+
+    /**
+     * @return every transaction of this user's accounts, in timestamp order
+     */
+    public TransactionTimeline getTimeline() {
+        return new TransactionTimeline(accounts.stream().map(Account::getTransactions).toList());
+    }
+
     /**
      * @return
      */
     public ObjectNode toJSON() {
-        ObjectNode userNode = new ObjectMapper().createObjectNode();
+        ObjectNode userNode = JsonNodeFactory.instance.objectNode();
         userNode.put("firstName", firstName);
         userNode.put("lastName", lastName);
         userNode.put("email", email);
 
-        ArrayNode accountsNode = new ObjectMapper().createArrayNode();
+        ArrayNode accountsNode = JsonNodeFactory.instance.arrayNode();
         for (Account account : accounts) {
             accountsNode.add(account.toJSON());
         }
@@ -0,0 +1,173 @@
+package org.poo.utils;
+
+import lombok.Getter;
+
+import java.util.Random;
+
+/**
+ * Seeded generator of IBANs and card numbers. Every run owns one, so two
+ * runs over the same input generate the same identifiers even when they
+ * execute at the same time.
+ * <p>
+ * Identifiers are handed out packed in a {@code long}: the digits of an
+ * IBAN ("RO", 2 digits, "POOB", 16 digits) or of a card number (16 digits)
+ * read as one decimal number. The digits are drawn from the same seeded
+ * sequences, in the same order, as their text, which is only rendered by
+ * {@link #formatIban(long)} and {@link #formatCardNumber(long)}.
+ */
+public final class IdGenerator {
+    /** Packed value of no identifier, and of any text that is not one. */
+    public static final long NONE = -1;
+
+    private static final int IBAN_SEED = 1;
+    private static final int CARD_SEED = 2;
+    private static final int DIGIT_BOUND = 10;
+    private static final int DIGIT_GENERATION = 16;
+    private static final String RO_STR = "RO";
+    private static final String POO_STR = "POOB";
+    private static final int CHECK_DIGITS = RO_STR.length();
+    private static final int IBAN_LENGTH = RO_STR.length() + CHECK_DIGITS
+            + POO_STR.length() + DIGIT_GENERATION;
+    /** 10 to the power of {@link #DIGIT_GENERATION}. */
+    private static final long ACCOUNT_SCALE = 10_000_000_000_000_000L;
+
+    private final Random ibanRandom = new Random(IBAN_SEED);
+    private final Random cardRandom = new Random(CARD_SEED);
+
+    @Getter
+    private int ibanCount = 0;
+    @Getter
+    private int cardNumberCount = 0;
+
+    /**
+     * @return the next IBAN, packed
+     */
+    public long nextIban() {
+        ibanCount++;
+        long iban = 0;
+        for (int i = 0; i < CHECK_DIGITS + DIGIT_GENERATION; i++) {
+            iban = iban * DIGIT_BOUND + ibanRandom.nextInt(DIGIT_BOUND);
+        }
+        return iban;
+    }
+
+    /**
+     * @return the next card number, packed
+     */
+    public long nextCardNumber() {
+        cardNumberCount++;
+        long cardNumber = 0;
+        for (int i = 0; i < DIGIT_GENERATION; i++) {
+            cardNumber = cardNumber * DIGIT_BOUND + cardRandom.nextInt(DIGIT_BOUND);
+        }
+        return cardNumber;
+    }
+
+    /**
+     * Utility method for generating an IBAN code.
+     *
+     * @return the IBAN as String
+     */
+    public String generateIBAN() {
+        return formatIban(nextIban());
+    }
+
+    /**
+     * Utility method for generating a card number.
+     *
+     * @return the card number as String
+     */
+    public String generateCardNumber() {
+        return formatCardNumber(nextCardNumber());
+    }
+
+    /**
+     * Draws identifiers until the given number of each has been generated,
+     * so the next ones continue the sequence of an earlier run.
+     * @param ibans
+     * @param cardNumbers
+     */
+    public void skipTo(final int ibans, final int cardNumbers) {
+        while (ibanCount < ibans) {
+            nextIban();
+        }
+        while (cardNumberCount < cardNumbers) {
+            nextCardNumber();
+        }
+    }
+
+    /**
+     * @param iban
+     * @return the packed IBAN, or {@link #NONE} if the text is not an IBAN
+     *         this generator could have made
+     */
+    public static long parseIban(final String iban) {
+        if (iban == null || iban.length() != IBAN_LENGTH || !iban.startsWith(RO_STR)
+                || !iban.startsWith(POO_STR, RO_STR.length() + CHECK_DIGITS)) {
+            return NONE;
+        }
+        long checkDigits = parseDigits(iban, RO_STR.length(), CHECK_DIGITS);
+        long account = parseDigits(iban, IBAN_LENGTH - DIGIT_GENERATION, DIGIT_GENERATION);
+        if (checkDigits == NONE || account == NONE) {
+            return NONE;
+        }
+        return checkDigits * ACCOUNT_SCALE + account;
+    }
+
+    /**
+     * @param cardNumber
+     * @return the packed card number, or {@link #NONE} if the text is not a
+     *         card number this generator could have made
+     */
+    public static long parseCardNumber(final String cardNumber) {
+        if (cardNumber == null || cardNumber.length() != DIGIT_GENERATION) {
+            return NONE;
+        }
+        return parseDigits(cardNumber, 0, DIGIT_GENERATION);
+    }
+
+    /**
+     * @param iban a packed IBAN
+     * @return its text
+     */
+    public static String formatIban(final long iban) {
+        char[] text = new char[IBAN_LENGTH];
+        RO_STR.getChars(0, RO_STR.length(), text, 0);
+        POO_STR.getChars(0, POO_STR.length(), text, RO_STR.length() + CHECK_DIGITS);
+        long account = iban % ACCOUNT_SCALE;
+        putDigits(iban / ACCOUNT_SCALE, text, RO_STR.length(), CHECK_DIGITS);
+        putDigits(account, text, IBAN_LENGTH - DIGIT_GENERATION, DIGIT_GENERATION);
+        return new String(text);
+    }
+
+    /**
+     * @param cardNumber a packed card number
+     * @return its text
+     */
+    public static String formatCardNumber(final long cardNumber) {
+        char[] text = new char[DIGIT_GENERATION];
+        putDigits(cardNumber, text, 0, DIGIT_GENERATION);
+        return new String(text);
+    }
+
+    private static long parseDigits(final String text, final int from, final int count) {
+        long value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return NONE;
+            }
+            value = value * DIGIT_BOUND + (c - '0');
+        }
+        return value;
+    }
+
+    private static void putDigits(final long value, final char[] text, final int from,
+                                  final int count) {
+        long rest = value;
+        for (int i = from + count - 1; i >= from; i--) {
+            text[i] = (char) ('0' + rest % DIGIT_BOUND);
+            rest /= DIGIT_BOUND;
+        }
+    }
+}
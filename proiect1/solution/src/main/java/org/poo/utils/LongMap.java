@@ -0,0 +1,147 @@
+package org.poo.utils;
+
+import java.util.Objects;
+
+/**
+ * Hash map from primitive {@code long} keys to non-null values, with open
+ * addressing and linear probing, so lookups neither box the key nor chase
+ * entry objects. Removal shifts the following entries of the probe run back
+ * instead of leaving tombstones.
+ * @param <V> the type of the values
+ */
+public final class LongMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * @return the number of keys mapped
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param key
+     * @return the value of the key, or null if it is not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Maps the key to the value unless it is mapped already.
+     * @param key
+     * @param value
+     */
+    public void putIfAbsent(final long key, final V value) {
+        Objects.requireNonNull(value);
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Unmaps the key if it is mapped to the given value.
+     * @param key
+     * @param value
+     */
+    public void remove(final long key, final V value) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                break;
+            }
+        }
+        if (values[i] == null || !values[i].equals(value)) {
+            return;
+        }
+
+        // shift back every later entry of the run whose probe passed the hole
+        int hole = i;
+        for (int j = (hole + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        values[hole] = null;
+        size--;
+    }
+
+    /**
+     * @param other
+     * @return whether both maps hold the same keys mapped to equal values
+     */
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof LongMap<?> map) || map.size != size) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null && !values[i].equals(map.get(keys[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                hash += Long.hashCode(keys[i]) ^ values[i].hashCode();
+            }
+        }
+        return hash;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int j = slot(oldKeys[i], mask);
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slot(final long key, final int mask) {
+        long hash = key * GOLDEN_RATIO;
+        return (int) (hash ^ (hash >>> Integer.SIZE)) & mask;
+    }
+}